@@ -0,0 +1,41 @@
+package org.benchmarks;
+
+import jade.core.AID;
+import org.Engine;
+import org.codec.ItemStock;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Benchmark inputs built from the same generators the random scenarios use, seeded so every fork sees the same data.
+ */
+final class BenchmarkData {
+    static final long SEED = 42L;
+
+    private BenchmarkData() {
+    }
+
+    static Map<AID, ItemStock> marketStocks(final int markets, final int catalogSize) {
+        Engine.seed(SEED);
+        final Map<AID, ItemStock> stocks = new LinkedHashMap<>();
+        for (int i = 0; i < markets; i++) {
+            stocks.put(aid("Market" + i), ItemStock.of(Engine.getRandomPricedSubset(catalogSize)));
+        }
+        return stocks;
+    }
+
+    /**
+     * AIDs with a local name need a running platform, so benchmark agents get a full name on a made-up one.
+     */
+    static AID aid(final String localName) {
+        return new AID(localName + "@benchmark", AID.ISGUID);
+    }
+
+    static List<String> order(final int orderSize) {
+        Engine.seed(SEED + 1);
+        return new ArrayList<>(Engine.getRandomSubset(orderSize));
+    }
+}
@@ -0,0 +1,49 @@
+package org.benchmarks;
+
+import jade.core.AID;
+import jade.core.Agent;
+import org.Util;
+import org.logging.LogLevel;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link Util#log} on the agent thread. Records go to /dev/null so the writer thread is not bound by a terminal;
+ * the contended variant logs from as many threads as a busy container runs agents.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Dlog.file=/dev/null", "-Dlog.level=INFO"})
+@State(Scope.Benchmark)
+public class LoggingBenchmark {
+    private final Agent _agent = new Agent();
+    private int _counter = 0;
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        // Agents get their AID from the container; set it directly so the record carries a name.
+        final Method setAID = Agent.class.getDeclaredMethod("setAID", AID.class);
+        setAID.setAccessible(true);
+        setAID.invoke(_agent, BenchmarkData.aid("Delivery0"));
+    }
+
+    @Benchmark
+    public void log() {
+        Util.log(_agent, "Sending stock queries to " + (++_counter & 1023) + " markets...");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void logContended() {
+        Util.log(_agent, "Sending stock queries to " + (++_counter & 1023) + " markets...");
+    }
+
+    @Benchmark
+    public void logFiltered() {
+        Util.log(_agent, LogLevel.DEBUG, "Sending stock queries to " + (++_counter & 1023) + " markets...");
+    }
+}
@@ -0,0 +1,52 @@
+package org.benchmarks;
+
+import jade.core.AID;
+import org.Settings;
+import org.codec.ItemStock;
+import org.selection.MarketSelection;
+import org.selection.MarketSelector;
+import org.selection.SelectionMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Market selection of {@code ClientHandlerBehaviour.CalculateCosts} for one order against the stock of every market.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MarketSelectionBenchmark {
+    @Param({"10", "100", "1000"})
+    private int markets;
+
+    @Param({"5", "14"})
+    private int catalogSize;
+
+    @Param({"5", "19"})
+    private int orderSize;
+
+    @Param({"GREEDY", "EXACT"})
+    private SelectionMode mode;
+
+    private Map<AID, ItemStock> _marketStocks;
+    private List<String> _order;
+    private MarketSelector _selector;
+
+    @Setup
+    public void setup() {
+        _marketStocks = BenchmarkData.marketStocks(markets, catalogSize);
+        _order = BenchmarkData.order(orderSize);
+        _selector = MarketSelector.forMode(mode, Settings.marketSelectionBudgetMillis);
+    }
+
+    @Benchmark
+    public MarketSelection select() {
+        return _selector.select(_order, _marketStocks);
+    }
+}
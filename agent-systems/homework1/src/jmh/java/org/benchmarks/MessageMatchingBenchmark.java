@@ -0,0 +1,77 @@
+package org.benchmarks;
+
+import jade.lang.acl.ACLMessage;
+import jade.lang.acl.MessageTemplate;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routing the stock replies of all open orders of one delivery agent to their handlers: a {@link MessageTemplate}
+ * per handler tried in turn, against the conversation id split of the {@code OrderDispatcherBehaviour}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageMatchingBenchmark {
+    @Param({"10", "100", "1000"})
+    private int markets;
+
+    @Param({"1", "10", "100"})
+    private int openOrders;
+
+    private final List<ACLMessage> _inbox = new ArrayList<>();
+    private final List<MessageTemplate> _templates = new ArrayList<>();
+    private final Map<String, Integer> _handlers = new HashMap<>();
+
+    @Setup
+    public void setup() {
+        final List<String> orderIds = new ArrayList<>();
+        for (int order = 0; order < openOrders; order++) {
+            final String orderId = "Client" + order + "-Delivery:" + new UUID(BenchmarkData.SEED, order);
+            orderIds.add(orderId);
+            _templates.add(MessageTemplate.MatchConversationId("stock-query:" + orderId));
+            _handlers.put(orderId, order);
+        }
+        // Replies of different orders arrive interleaved.
+        for (int market = 0; market < markets; market++) {
+            for (String orderId : orderIds) {
+                final ACLMessage reply = new ACLMessage(ACLMessage.INFORM);
+                reply.setSender(BenchmarkData.aid("Market" + market));
+                reply.setConversationId("stock-query:" + orderId);
+                _inbox.add(reply);
+            }
+        }
+    }
+
+    @Benchmark
+    public void templates(final Blackhole blackhole) {
+        for (ACLMessage msg : _inbox) {
+            for (int handler = 0; handler < _templates.size(); handler++) {
+                if (_templates.get(handler).match(msg)) {
+                    blackhole.consume(handler);
+                    break;
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void dispatcher(final Blackhole blackhole) {
+        for (ACLMessage msg : _inbox) {
+            final String cid = msg.getConversationId();
+            final int separator = cid.indexOf(':');
+            blackhole.consume(cid.substring(0, separator));
+            blackhole.consume(_handlers.get(cid.substring(separator + 1)));
+        }
+    }
+}
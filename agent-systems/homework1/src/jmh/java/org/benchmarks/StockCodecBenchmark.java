@@ -0,0 +1,82 @@
+package org.benchmarks;
+
+import jade.lang.acl.ACLMessage;
+import org.Settings;
+import org.codec.ItemStock;
+import org.codec.MessageCodec;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stock replies of one order: every market answering the query ({@code SellItemsBehaviour}) and the delivery agent
+ * parsing all the answers ({@code ClientHandlerBehaviour.parseStock}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StockCodecBenchmark {
+    @Param({"10", "100", "1000"})
+    private int markets;
+
+    @Param({"5", "14"})
+    private int catalogSize;
+
+    @Param({"5", "19"})
+    private int orderSize;
+
+    @Param({"false", "true"})
+    private boolean textCodec;
+
+    private final List<ItemStock> _stocks = new ArrayList<>();
+    private final List<ACLMessage> _replies = new ArrayList<>();
+    private List<String> _order;
+
+    @Setup
+    public void setup() {
+        Settings.textCodec = textCodec;
+        _order = BenchmarkData.order(orderSize);
+        for (ItemStock stock : BenchmarkData.marketStocks(markets, catalogSize).values()) {
+            _stocks.add(stock);
+            _replies.add(reply(stock));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        Settings.textCodec = false;
+    }
+
+    @Benchmark
+    public void writeStock(final Blackhole blackhole) {
+        for (ItemStock stock : _stocks) {
+            blackhole.consume(reply(stock));
+        }
+    }
+
+    @Benchmark
+    public void readStock(final Blackhole blackhole) {
+        for (ACLMessage reply : _replies) {
+            blackhole.consume(MessageCodec.readStock(reply));
+        }
+    }
+
+    private ACLMessage reply(final ItemStock stock) {
+        final ACLMessage reply = new ACLMessage(ACLMessage.INFORM);
+        final MessageCodec.StockWriter stockContent = MessageCodec.stockWriter();
+        for (String item : _order) {
+            final double price = stock.price(item);
+            if (!Double.isNaN(price)) {
+                stockContent.add(item, price);
+            }
+        }
+        stockContent.writeTo(reply);
+        return reply;
+    }
+}
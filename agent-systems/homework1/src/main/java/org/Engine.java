@@ -4,6 +4,11 @@ import jade.core.Profile;
 import jade.core.ProfileImpl;
 import jade.core.Runtime;
 import jade.wrapper.ContainerController;
+import org.agents.CoordinatorAgent;
+import org.agents.DirectoryAgent;
+import org.agents.PriceOracleAgent;
+import org.bootstrap.AgentSpec;
+import org.bootstrap.ContainerBootstrap;
 import org.exceptions.JadePlatformInitializationException;
 
 import java.util.*;
@@ -16,78 +21,100 @@ import static org.JADEEngine.runGUI;
 
 public class Engine {
     private static final ExecutorService executor = Executors.newCachedThreadPool();
+    public static final long launchNanos = System.nanoTime();
     public static int clientAgentNumber;
     public static int deliveryAgentNumber;
     public static int marketAgentNumber;
 
     public static void main(String[] args) {
+        if (args.length > 0) {
+            HeadlessRunner.run(args);
+            return;
+        }
+
+        final ContainerController container = startPlatform();
+        runGUI(container);
+
+        Scanner scanner = new Scanner(System.in);
+        System.out.println("AVAIABLE TASKS:");
+        System.out.println("1 - Small sample task (similar to the one from pdf, 1 clientAgents 3 deliveryAgents 3 marketAgents)");
+        System.out.println("2 - Test with multiple clients (5), delivery agents (5) and markets (6)");
+        System.out.println("3 - One client with many delivery agents (5) and markets (6)");
+        System.out.println("4 - ULTIMATE test (randomly generated 100 ClientAgents, DeliveryAgents, MarketAgents) each with randomized orders, stock etc.");
+        System.out.println("5 - [CAREFUL] VERY ULTIMATE test (same as 4 but 1000 :p)");
+        System.out.println("--------");
+        System.out.print("Please enter the task number to execute: ");
+        String input = scanner.nextLine();
+        scanner.close();
+
+        runTask(input, container);
+    }
+
+    public static ContainerController startPlatform() {
         final Runtime runtime = Runtime.instance();
         final Profile profile = new ProfileImpl();
         profile.setParameter(Profile.MTPS, ""); // Without this parameter the JADE startup takes ~9 seconds (on my machine), now it is instant
+        profile.setParameter("jade_domain_df_maxresult", String.valueOf(Settings.directoryPageSize));
 
         try {
-            final ContainerController container = executor.submit(() -> runtime.createMainContainer(profile)).get();
-
-            runGUI(container);
-
-            Scanner scanner = new Scanner(System.in);
-            System.out.println("AVAIABLE TASKS:");
-            System.out.println("1 - Small sample task (similar to the one from pdf, 1 clientAgents 3 deliveryAgents 3 marketAgents)");
-            System.out.println("2 - Test with multiple clients (5), delivery agents (5) and markets (6)");
-            System.out.println("3 - One client with many delivery agents (5) and markets (6)");
-            System.out.println("4 - ULTIMATE test (randomly generated 100 ClientAgents, DeliveryAgents, MarketAgents) each with randomized orders, stock etc.");
-            System.out.println("5 - [CAREFUL] VERY ULTIMATE test (same as 4 but 1000 :p)");
-            System.out.println("--------");
-            System.out.print("Please enter the task number to execute: ");
-            String input = scanner.nextLine();
-            scanner.close();
-
-            switch (input) {
-                case "1" -> {
-                    clientAgentNumber = 1;
-                    deliveryAgentNumber = 3;
-                    marketAgentNumber = 3;
-                    runGroceryTask(container);
-                }
-                case "2" -> {
-                    clientAgentNumber = 5;
-                    deliveryAgentNumber = 5;
-                    marketAgentNumber = 6;
-                    runNikczemnyTestSzefa(container);
-                }
-                case "3" -> {
-                    clientAgentNumber = 1;
-                    deliveryAgentNumber = 5;
-                    marketAgentNumber = 6;
-                    runNikczemnyTestSzefa2(container);
-                }
-                case "4" -> {
-                    clientAgentNumber = 100;
-                    deliveryAgentNumber = 100;
-                    marketAgentNumber = 100;
-                    runULTIMATENIKCZEMNOSCSZEFA(container);
-                }
-                case "5" -> {
-                    clientAgentNumber = 1000;
-                    deliveryAgentNumber = 1000;
-                    marketAgentNumber = 1000;
-                    runABSOLUTEMAXIMUMULTIMATENIKCZEMNOSCSZEFA(container);
-                }
-                case "6" -> {
-                    clientAgentNumber = 3;
-                    deliveryAgentNumber = 1;
-                    marketAgentNumber = 3;
-                    runTest(container);
-                }
-                default -> throw new RuntimeException("Invalid task number: " + input);
-            }
-
+            return executor.submit(() -> runtime.createMainContainer(profile)).get();
         } catch (final InterruptedException | ExecutionException e) {
             throw new JadePlatformInitializationException(e);
         }
     }
 
-    private static void runTest(final ContainerController container) throws InterruptedException, ExecutionException {
+    static void runTask(final String task, final ContainerController container) {
+        switch (task) {
+            case "1" -> {
+                clientAgentNumber = 1;
+                deliveryAgentNumber = 3;
+                marketAgentNumber = 3;
+                runGroceryTask(container);
+            }
+            case "2" -> {
+                clientAgentNumber = 5;
+                deliveryAgentNumber = 5;
+                marketAgentNumber = 6;
+                runNikczemnyTestSzefa(container);
+            }
+            case "3" -> {
+                clientAgentNumber = 1;
+                deliveryAgentNumber = 5;
+                marketAgentNumber = 6;
+                runNikczemnyTestSzefa2(container);
+            }
+            case "4" -> {
+                clientAgentNumber = 100;
+                deliveryAgentNumber = 100;
+                marketAgentNumber = 100;
+                runULTIMATENIKCZEMNOSCSZEFA(container);
+            }
+            case "5" -> {
+                clientAgentNumber = 1000;
+                deliveryAgentNumber = 1000;
+                marketAgentNumber = 1000;
+                runABSOLUTEMAXIMUMULTIMATENIKCZEMNOSCSZEFA(container);
+            }
+            case "6" -> {
+                clientAgentNumber = 3;
+                deliveryAgentNumber = 1;
+                marketAgentNumber = 3;
+                runTest(container);
+            }
+            default -> throw new RuntimeException("Invalid task number: " + task);
+        }
+    }
+
+    private static void runCoordinator(final ContainerController container) {
+        runAgent(container, CoordinatorAgent.NAME, "CoordinatorAgent", new Object[]{marketAgentNumber, deliveryAgentNumber});
+        runAgent(container, DirectoryAgent.NAME_PREFIX + "Main", "DirectoryAgent", new Object[0]);
+        if (Settings.priceOracle) {
+            runAgent(container, PriceOracleAgent.NAME, "PriceOracleAgent", new Object[0]);
+        }
+    }
+
+    private static void runTest(final ContainerController container) {
+        runCoordinator(container);
         runAgent(container, "DeliveryBolt", "DeliveryAgent",
                 new Object[]{5.00});
         runAgent(container, "Client1", "ClientAgent",
@@ -104,7 +131,8 @@ public class Engine {
                 new Object[]{Map.of("coffee", 7.50, "milk", 6.39)});
     }
 
-    private static void runGroceryTask(final ContainerController container) throws InterruptedException {
+    private static void runGroceryTask(final ContainerController container) {
+        runCoordinator(container);
         runAgent(container, "DeliveryBolt", "DeliveryAgent",
                 new Object[]{5.00});
         runAgent(container, "DeliveryUber", "DeliveryAgent",
@@ -122,6 +150,7 @@ public class Engine {
     }
 
     private static void runNikczemnyTestSzefa(final ContainerController mainContainer) {
+        runCoordinator(mainContainer);
         runAgent(mainContainer, "Pyszne", "DeliveryAgent", new Object[]{4.50});
         runAgent(mainContainer, "Glovo", "DeliveryAgent", new Object[]{8.75});
         runAgent(mainContainer, "DHL", "DeliveryAgent", new Object[]{12.30});
@@ -143,6 +172,7 @@ public class Engine {
     }
 
     private static void runNikczemnyTestSzefa2(final ContainerController mainContainer) {
+        runCoordinator(mainContainer);
         // Ruthless delivery agents fighting for dominance
         runAgent(mainContainer, "Pyszne", "DeliveryAgent", new Object[]{3.99});
         runAgent(mainContainer, "Glovo", "DeliveryAgent", new Object[]{8.49});
@@ -176,7 +206,7 @@ public class Engine {
         )});
     }
 
-    private static final List<String> SHOPPING_LIST = List.of(
+    public static final List<String> SHOPPING_LIST = List.of(
             "golden apple", "caviar", "wagyu steak", "truffle", "champagne",
             "lobster", "black garlic", "saffron", "matsutake mushrooms", "aged balsamic vinegar",
             "beluga caviar", "kobe beef", "foie gras", "white truffle", "bluefin tuna",
@@ -191,13 +221,17 @@ public class Engine {
 
     private static final Random RAND = new Random();
 
-    private static List<String> getRandomSubset(int size) {
+    public static void seed(long seed) {
+        RAND.setSeed(seed);
+    }
+
+    public static List<String> getRandomSubset(int size) {
         List<String> shuffled = new ArrayList<>(SHOPPING_LIST);
         Collections.shuffle(shuffled, RAND);
         return shuffled.subList(0, Math.min(size, shuffled.size()));
     }
 
-    private static Map<String, Double> getRandomPricedSubset(int size) {
+    public static Map<String, Double> getRandomPricedSubset(int size) {
         Map<String, Double> productPrices = new HashMap<>();
         for (String item : getRandomSubset(size)) {
             productPrices.put(item, RAND.nextDouble() * 500 + 20); // Prices between 20 and 520
@@ -206,36 +240,68 @@ public class Engine {
     }
 
     private static void runULTIMATENIKCZEMNOSCSZEFA(final ContainerController mainContainer) {
-        // LEGION of delivery agents with random prices
-        for (int i = 1; i <= 100; i++) {
-            runAgent(mainContainer, "DeliveryAgent" + i, "DeliveryAgent", new Object[]{(RAND.nextDouble() * 50) + 5.00});
-        }
+        runRandomScenario(mainContainer, 100, 100, 100, 5, 19, 5, 14);
+    }
 
-        // CLIENTS flooding the system with demands
-        for (int i = 1; i <= 100; i++) {
-            runAgent(mainContainer, "Client" + i, "ClientAgent", new Object[]{getRandomSubset(RAND.nextInt(15) + 5)});
-        }
+    private static void runABSOLUTEMAXIMUMULTIMATENIKCZEMNOSCSZEFA(final ContainerController mainContainer) {
+        runRandomScenario(mainContainer, 1000, 1000, 1000, 5, 19, 5, 14);
+    }
 
-        // MARKETS with randomly priced products
-        for (int i = 1; i <= 100; i++) {
-            runAgent(mainContainer, "Market" + i, "MarketAgent", new Object[]{getRandomPricedSubset(RAND.nextInt(10) + 5)});
+    static void runRandomScenario(final ContainerController mainContainer, final int clients, final int deliveries, final int markets,
+                                  final int minOrderSize, final int maxOrderSize, final int minCatalogSize, final int maxCatalogSize) {
+        runCoordinator(mainContainer);
+        final List<AgentSpec> agents = new ArrayList<>();
+        agents.addAll(randomDeliveries(deliveries));
+        agents.addAll(randomClients("Client", clients, minOrderSize, maxOrderSize));
+        agents.addAll(randomMarkets(markets, minCatalogSize, maxCatalogSize));
+
+        new ContainerBootstrap(mainContainer).launch(agents);
+    }
+
+    /**
+     * The delivery agents and markets of a soak run; its clients come later in waves ({@link #runClientWave}).
+     */
+    static void runSoakScenario(final ContainerController mainContainer, final int deliveries, final int markets,
+                                final int minCatalogSize, final int maxCatalogSize) {
+        runCoordinator(mainContainer);
+        final List<AgentSpec> agents = new ArrayList<>();
+        agents.addAll(randomDeliveries(deliveries));
+        agents.addAll(randomMarkets(markets, minCatalogSize, maxCatalogSize));
+
+        new ContainerBootstrap(mainContainer).launch(agents);
+    }
+
+    static void runClientWave(final ContainerController mainContainer, final int wave, final int clients,
+                              final int minOrderSize, final int maxOrderSize) {
+        for (AgentSpec client : randomClients("Client" + wave + "-", clients, minOrderSize, maxOrderSize)) {
+            runAgent(mainContainer, client.get_name(), client.get_className(), client.get_args());
         }
     }
 
-    private static void runABSOLUTEMAXIMUMULTIMATENIKCZEMNOSCSZEFA(final ContainerController mainContainer) {
-        // LEGION of delivery agents with random prices
-        for (int i = 1; i <= 1000; i++) {
-            runAgent(mainContainer, "DeliveryAgent" + i, "DeliveryAgent", new Object[]{(RAND.nextDouble() * 50) + 5.00});
+    // LEGION of delivery agents with random prices
+    private static List<AgentSpec> randomDeliveries(final int deliveries) {
+        final List<AgentSpec> agents = new ArrayList<>();
+        for (int i = 1; i <= deliveries; i++) {
+            agents.add(new AgentSpec("DeliveryAgent" + i, "DeliveryAgent", new Object[]{(RAND.nextDouble() * 50) + 5.00}));
         }
+        return agents;
+    }
 
-        // CLIENTS flooding the system with demands
-        for (int i = 1; i <= 1000; i++) {
-            runAgent(mainContainer, "Client" + i, "ClientAgent", new Object[]{getRandomSubset(RAND.nextInt(15) + 5)});
+    // CLIENTS flooding the system with demands
+    private static List<AgentSpec> randomClients(final String prefix, final int clients, final int minOrderSize, final int maxOrderSize) {
+        final List<AgentSpec> agents = new ArrayList<>();
+        for (int i = 1; i <= clients; i++) {
+            agents.add(new AgentSpec(prefix + i, "ClientAgent", new Object[]{getRandomSubset(RAND.nextInt(maxOrderSize - minOrderSize + 1) + minOrderSize)}));
         }
+        return agents;
+    }
 
-        // MARKETS with randomly priced products
-        for (int i = 1; i <= 1000; i++) {
-            runAgent(mainContainer, "Market" + i, "MarketAgent", new Object[]{getRandomPricedSubset(RAND.nextInt(10) + 5)});
+    // MARKETS with randomly priced products
+    private static List<AgentSpec> randomMarkets(final int markets, final int minCatalogSize, final int maxCatalogSize) {
+        final List<AgentSpec> agents = new ArrayList<>();
+        for (int i = 1; i <= markets; i++) {
+            agents.add(new AgentSpec("Market" + i, "MarketAgent", new Object[]{getRandomPricedSubset(RAND.nextInt(maxCatalogSize - minCatalogSize + 1) + minCatalogSize)}));
         }
+        return agents;
     }
 }
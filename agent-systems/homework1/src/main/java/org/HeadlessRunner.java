@@ -0,0 +1,139 @@
+package org;
+
+import jade.wrapper.ContainerController;
+import jade.wrapper.ControllerException;
+import org.logging.AsyncLogger;
+import org.metrics.RunStats;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.Locale;
+
+/**
+ * Runs one scenario without the GUI or the task prompt, waits until every client got its delivery
+ * (or gave up), prints a throughput and latency report and shuts the platform down.
+ * <p>
+ * The soak scenario keeps the delivery agents and markets running for {@code duration} seconds and starts a wave
+ * of {@code clients} new clients every {@code wave-ms}; clients leave once their order is done. Every few waves it
+ * prints the open order handlers and the heap after a full GC, which should both stay flat.
+ * <pre>
+ * java org.Engine --scenario=random --clients=100 --deliveries=100 --markets=100 --seed=42
+ * java org.Engine --scenario=2 --log.level=WARN
+ * java org.Engine --config=run.properties --timeout=120
+ * java org.Engine --scenario=soak --clients=20 --wave-ms=500 --duration=300 --deliveries=20 --markets=50
+ * </pre>
+ */
+public class HeadlessRunner {
+
+    public static void run(final String[] args) {
+        final ScenarioConfig config = ScenarioConfig.parse(args);
+        Engine.seed(config.get_seed());
+
+        final ContainerController container = Engine.startPlatform();
+        final long startNanos = System.nanoTime();
+        RunStats.reset();
+        if (config.get_scenario().equals("soak")) {
+            Engine.deliveryAgentNumber = config.get_deliveries();
+            Engine.marketAgentNumber = config.get_markets();
+            Settings.clientExitWhenDone = true;
+            Engine.runSoakScenario(container, config.get_deliveries(), config.get_markets(), config.get_minCatalogSize(), config.get_maxCatalogSize());
+            try {
+                soak(container, config);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else if (config.get_scenario().equals("random")) {
+            Engine.clientAgentNumber = config.get_clients();
+            Engine.deliveryAgentNumber = config.get_deliveries();
+            Engine.marketAgentNumber = config.get_markets();
+            Engine.runRandomScenario(container, config.get_clients(), config.get_deliveries(), config.get_markets(),
+                    config.get_minOrderSize(), config.get_maxOrderSize(), config.get_minCatalogSize(), config.get_maxCatalogSize());
+        } else {
+            Engine.runTask(config.get_scenario(), container);
+        }
+        if (!config.get_scenario().equals("soak")) {
+            RunStats.expectClients(Engine.clientAgentNumber);
+        }
+        final long launchedNanos = System.nanoTime();
+
+        boolean completed;
+        try {
+            completed = RunStats.awaitCompletion(config.get_timeoutSeconds() * 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            completed = false;
+        }
+        final long endNanos = System.nanoTime();
+
+        AsyncLogger.flush();
+        printReport(config, completed, startNanos, launchedNanos, endNanos);
+
+        try {
+            container.getPlatformController().kill();
+        } catch (ControllerException ignored) {
+        }
+        System.exit(completed ? 0 : 1);
+    }
+
+    private static void soak(final ContainerController container, final ScenarioConfig config) throws InterruptedException {
+        final long startNanos = System.nanoTime();
+        final long endNanos = startNanos + config.get_durationSeconds() * 1_000_000_000L;
+        final long sampleWaves = Math.max(1, 10_000 / Math.max(1, config.get_waveMillis()));
+        int wave = 0;
+        while (System.nanoTime() < endNanos) {
+            wave++;
+            Engine.runClientWave(container, wave, config.get_clients(), config.get_minOrderSize(), config.get_maxOrderSize());
+            Engine.clientAgentNumber += config.get_clients();
+            RunStats.expectClients(Engine.clientAgentNumber);
+            if (wave % sampleWaves == 0) {
+                printSoakSample(startNanos);
+            }
+            Thread.sleep(config.get_waveMillis());
+        }
+        printSoakSample(startNanos);
+    }
+
+    private static void printSoakSample(final long startNanos) {
+        System.gc();
+        final MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        System.out.printf(Locale.US, "soak %6.1f s: %d orders, %d delivered, %d without delivery, %d order handlers open, heap after GC %.1f MB%n",
+                (System.nanoTime() - startNanos) / 1e9, Engine.clientAgentNumber, RunStats.delivered(), RunStats.failed(),
+                RunStats.openOrders(), heap.getUsed() / 1e6);
+    }
+
+    private static void printReport(final ScenarioConfig config, final boolean completed,
+                                    final long startNanos, final long launchedNanos, final long endNanos) {
+        final long[] quotes = RunStats.quoteLatencies().sorted();
+        final long[] deliveries = RunStats.deliveryLatencies().sorted();
+        final long[] collections = RunStats.offerCollectionTimes().sorted();
+        final long[] lateOffers = RunStats.lateOfferDelays().sorted();
+        final double runSeconds = (endNanos - startNanos) / 1e9;
+        final long orderWindow = RunStats.lastDeliveryNanos() - RunStats.firstOrderNanos();
+
+        System.out.println("===== RUN REPORT =====");
+        System.out.println(config);
+        System.out.printf(Locale.US, "status: %s (delivered %d, without delivery %d, unfinished %d)%n",
+                completed ? "completed" : "TIMED OUT", RunStats.delivered(), RunStats.failed(), RunStats.pending());
+        System.out.printf(Locale.US, "agent launch: %.2f s, total run: %.2f s%n", (launchedNanos - startNanos) / 1e9, runSeconds);
+        System.out.printf(Locale.US, "throughput: %.2f orders/s over the run, %.2f orders/s from first order to last delivery%n",
+                RunStats.delivered() / runSeconds, orderWindow > 0 ? RunStats.delivered() / (orderWindow / 1e9) : 0.0);
+        System.out.printf(Locale.US, "quote latency (%d offers): p50 %.1f ms, p99 %.1f ms%n",
+                RunStats.quoteLatencies().count(), RunStats.percentile(quotes, 50) / 1e6, RunStats.percentile(quotes, 99) / 1e6);
+        System.out.printf(Locale.US, "delivery latency (%d orders): p50 %.1f ms, p99 %.1f ms%n",
+                RunStats.deliveryLatencies().count(), RunStats.percentile(deliveries, 50) / 1e6, RunStats.percentile(deliveries, 99) / 1e6);
+        System.out.printf(Locale.US, "offer collection: p50 %.1f ms, p99 %.1f ms, %d clients picked before all offers were in%n",
+                RunStats.percentile(collections, 50) / 1e6, RunStats.percentile(collections, 99) / 1e6, RunStats.partialSelections());
+        System.out.printf(Locale.US, "delivery agents: %d quotes, %d from partial market answers, %d deliveries without every market%n",
+                RunStats.quotes(), RunStats.partialQuotes(), RunStats.partialDeliveries());
+        System.out.printf(Locale.US, "order handlers: %d still open, %d orders refused at the open order cap, %d given up after the order timeout%n",
+                RunStats.openOrders(), RunStats.refusedOrders(), RunStats.expiredOrders());
+        if (RunStats.refusedQueries() > 0) {
+            System.out.printf(Locale.US, "market admission: %d stock queries refused, %d asked again later, %d markets left out of a quote%n",
+                    RunStats.refusedQueries(), RunStats.retriedQueries(), RunStats.abandonedQueries());
+        }
+        if (lateOffers.length > 0) {
+            System.out.printf(Locale.US, "late offers: %d, arriving p50 %.1f ms / max %.1f ms after their client picked%n",
+                    RunStats.lateOfferDelays().count(), RunStats.percentile(lateOffers, 50) / 1e6, RunStats.lateOfferDelays().max() / 1e6);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org;
+
+import lombok.Getter;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Settings of a headless run, read from an optional properties file ({@code --config=<file>}) and then from
+ * {@code --key=value} arguments, which win. Keys that are not scenario keys are passed on as system properties,
+ * so every {@link Settings} value (e.g. {@code --log.level=WARN}) can be set the same way.
+ */
+@Getter
+public class ScenarioConfig {
+    private String _scenario = "random";
+    private long _seed = System.nanoTime();
+    private int _clients = 100;
+    private int _deliveries = 100;
+    private int _markets = 100;
+    private int _minOrderSize = 5;
+    private int _maxOrderSize = 19;
+    private int _minCatalogSize = 5;
+    private int _maxCatalogSize = 14;
+    private long _timeoutSeconds = 600;
+    private long _durationSeconds = 60;
+    private long _waveMillis = 1000;
+
+    public static ScenarioConfig parse(final String[] args) {
+        final Properties properties = new Properties();
+        for (String arg : args) {
+            final String option = arg.startsWith("--") ? arg.substring(2) : arg;
+            if (option.startsWith("config=")) {
+                load(properties, option.substring("config=".length()));
+            }
+        }
+        for (String arg : args) {
+            final String option = arg.startsWith("--") ? arg.substring(2) : arg;
+            final int separator = option.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected --key=value, got: " + arg);
+            }
+            properties.setProperty(option.substring(0, separator), option.substring(separator + 1));
+        }
+
+        final ScenarioConfig config = new ScenarioConfig();
+        for (String key : properties.stringPropertyNames()) {
+            final String value = properties.getProperty(key).trim();
+            switch (key) {
+                case "config" -> {
+                }
+                case "scenario" -> config._scenario = value;
+                case "seed" -> config._seed = Long.parseLong(value);
+                case "clients" -> config._clients = Integer.parseInt(value);
+                case "deliveries" -> config._deliveries = Integer.parseInt(value);
+                case "markets" -> config._markets = Integer.parseInt(value);
+                case "order-size" -> {
+                    config._minOrderSize = parseMin(value);
+                    config._maxOrderSize = parseMax(value);
+                }
+                case "catalog-size" -> {
+                    config._minCatalogSize = parseMin(value);
+                    config._maxCatalogSize = parseMax(value);
+                }
+                case "timeout" -> config._timeoutSeconds = Long.parseLong(value);
+                case "duration" -> config._durationSeconds = Long.parseLong(value);
+                case "wave-ms" -> config._waveMillis = Long.parseLong(value);
+                default -> System.setProperty(key, value);
+            }
+        }
+        return config;
+    }
+
+    private static void load(final Properties properties, final String path) {
+        try (InputStream in = new FileInputStream(path)) {
+            properties.load(in);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could't read scenario config: " + path, e);
+        }
+    }
+
+    private static int parseMin(final String range) {
+        return Integer.parseInt(range.split("-")[0].trim());
+    }
+
+    private static int parseMax(final String range) {
+        final String[] bounds = range.split("-");
+        return Integer.parseInt(bounds[bounds.length - 1].trim());
+    }
+
+    @Override
+    public String toString() {
+        if (_scenario.equals("soak")) {
+            return "scenario=" + _scenario + " seed=" + _seed + " clients=" + _clients + " per " + _waveMillis + " ms for " + _durationSeconds + " s"
+                    + " deliveries=" + _deliveries + " markets=" + _markets + " order-size=" + _minOrderSize + "-" + _maxOrderSize
+                    + " catalog-size=" + _minCatalogSize + "-" + _maxCatalogSize;
+        }
+        if (!_scenario.equals("random")) {
+            return "scenario=" + _scenario + " seed=" + _seed;
+        }
+        return "scenario=" + _scenario + " seed=" + _seed + " clients=" + _clients + " deliveries=" + _deliveries + " markets=" + _markets
+                + " order-size=" + _minOrderSize + "-" + _maxOrderSize + " catalog-size=" + _minCatalogSize + "-" + _maxCatalogSize;
+    }
+}
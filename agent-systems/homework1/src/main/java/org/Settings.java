@@ -0,0 +1,58 @@
+package org;
+
+import org.behaviours.client.DeliveryChoice;
+import org.bootstrap.PartitionMode;
+import org.logging.LogLevel;
+import org.selection.SelectionMode;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class Settings {
+    public static SelectionMode marketSelectionMode = SelectionMode.valueOf(System.getProperty("market.selection.mode", "GREEDY"));
+    public static long marketSelectionBudgetMillis = Long.getLong("market.selection.budget.ms", 25L);
+    public static int deliverySelectionWorkers = Integer.getInteger("delivery.selection.workers", Runtime.getRuntime().availableProcessors() - 1);
+    public static long catalogTtlMillis = Long.getLong("delivery.catalog.ttl.ms", 0L);
+    public static boolean textCodec = Boolean.getBoolean("codec.text");
+    public static LogLevel logLevel = LogLevel.valueOf(System.getProperty("log.level", "INFO"));
+    public static Set<String> logAgents = parseList(System.getProperty("log.agents", ""));
+    public static boolean logAsync = Boolean.parseBoolean(System.getProperty("log.async", "true"));
+    public static String logFile = System.getProperty("log.file");
+    public static int logBufferSize = Integer.getInteger("log.buffer.size", 1 << 16);
+    public static int directoryBuckets = Integer.getInteger("directory.buckets", 32);
+    public static int directoryPageSize = Integer.getInteger("directory.page.size", 100);
+    public static boolean directoryItemIndex = Boolean.parseBoolean(System.getProperty("directory.item.index", "true"));
+    public static int clientDeliveryK = Integer.getInteger("client.delivery.k", 0);
+    public static DeliveryChoice clientDeliveryChoice = DeliveryChoice.valueOf(System.getProperty("client.delivery.choice", "MIXED"));
+    public static long offerDeadlineMillis = Long.getLong("offer.deadline.ms", 0L);
+    public static int offerFirstK = Integer.getInteger("offer.first.k", 0);
+    public static double offerTargetPrice = Double.parseDouble(System.getProperty("offer.target.price", "0"));
+    public static long deliveryQueryDeadlineMillis = Long.getLong("delivery.query.deadline.ms", 0L);
+    public static long deliveryBuyDeadlineMillis = Long.getLong("delivery.buy.deadline.ms", 0L);
+    public static long deliveryOrderTimeoutMillis = Long.getLong("delivery.order.timeout.ms", 0L);
+    public static int deliveryMaxOpenOrders = Integer.getInteger("delivery.max.open.orders", 0);
+    public static boolean clientExitWhenDone = Boolean.getBoolean("client.exit.when.done");
+    public static long deliveryBatchWindowMillis = Long.getLong("delivery.batch.window.ms", 0L);
+    public static int deliveryBatchSize = Integer.getInteger("delivery.batch.size", 16);
+    public static int bootstrapContainers = Integer.getInteger("bootstrap.containers", 0);
+    public static PartitionMode bootstrapPartition = PartitionMode.valueOf(System.getProperty("bootstrap.partition", "ROLE"));
+    public static boolean priceOracle = Boolean.getBoolean("price.oracle");
+    public static int marketReplicas = Integer.getInteger("market.replicas", 0);
+    public static int marketMailboxLimit = Integer.getInteger("market.mailbox.limit", 0);
+    public static double marketRatePerSecond = Double.parseDouble(System.getProperty("market.rate.per.second", "0"));
+    public static double marketRateBurst = Double.parseDouble(System.getProperty("market.rate.burst", "20"));
+    public static int deliveryRetryMax = Integer.getInteger("delivery.retry.max", 3);
+    public static long deliveryRetryBaseMillis = Long.getLong("delivery.retry.base.ms", 50L);
+    public static String traceFile = System.getProperty("trace.file");
+    public static double traceSampleRate = Double.parseDouble(System.getProperty("trace.sample", "0.1"));
+    public static int traceMaxEvents = Integer.getInteger("trace.max.events", 1_000_000);
+    public static boolean metricsJmx = Boolean.parseBoolean(System.getProperty("metrics.jmx", "false"));
+
+    private static Set<String> parseList(final String value) {
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+}
@@ -1,11 +1,34 @@
 package org;
 
 import jade.core.Agent;
+import org.logging.AsyncLogger;
+import org.logging.LogLevel;
 
-import java.util.Locale;
+import java.util.function.Supplier;
 
 public class Util {
     public static void log(Agent agent, String log) {
-        System.out.printf(String.format(Locale.US, "[%s] %s\n", agent.getLocalName(), log));
+        log(agent, LogLevel.INFO, log);
+    }
+
+    public static void log(Agent agent, LogLevel level, String log) {
+        AsyncLogger.log(agent.getLocalName(), level, log);
+    }
+
+    /**
+     * For messages that cost something to build: the supplier only runs if the line passes the level and agent filters.
+     */
+    public static void log(Agent agent, Supplier<String> log) {
+        log(agent, LogLevel.INFO, log);
+    }
+
+    public static void log(Agent agent, LogLevel level, Supplier<String> log) {
+        if (isLogEnabled(agent, level)) {
+            AsyncLogger.log(agent.getLocalName(), level, log.get());
+        }
+    }
+
+    public static boolean isLogEnabled(Agent agent, LogLevel level) {
+        return AsyncLogger.isEnabled(agent.getLocalName(), level);
     }
 }
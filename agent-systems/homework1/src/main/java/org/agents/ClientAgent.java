@@ -4,8 +4,12 @@ import jade.core.AID;
 import jade.core.Agent;
 import lombok.Getter;
 import lombok.Setter;
+import org.Settings;
 import org.Util;
+import org.behaviours.AwaitReadinessBehaviour;
 import org.behaviours.client.SearchDeliveryBehaviour;
+import org.behaviours.coordinator.ReadinessBehaviour;
+import org.metrics.AgentMetrics;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -20,6 +24,9 @@ public class ClientAgent extends Agent {
     @Setter
     private boolean _offerNotSelected = true;
     private final Map<AID, String> _orderConvoIds = new HashMap<>();
+    @Setter
+    private long _orderSentNanos = 0;
+    private AgentMetrics _metrics;
 
     @SuppressWarnings("unchecked")
     @Override
@@ -27,14 +34,24 @@ public class ClientAgent extends Agent {
         final Object[] args = getArguments();
         _order = (List<String>) args[0];
         _delivery = new ArrayList<>();
+        _metrics = AgentMetrics.register(this);
 
         Util.log(this, "Ready to order! My order list is: " + _order.toString());
-        while(true) {
-            try {
-                DeliveryAgent._latch.await();
-                break;
-            } catch (InterruptedException ignored) {}
+        addBehaviour(new AwaitReadinessBehaviour(this, ReadinessBehaviour.DELIVERIES_READY, () -> addBehaviour(new SearchDeliveryBehaviour(this))));
+    }
+
+    /**
+     * Called once the order got its delivery or failed; with {@code client.exit.when.done} the client then leaves
+     * the platform, as the clients of a soak run do.
+     */
+    public void orderFinished() {
+        if (Settings.clientExitWhenDone) {
+            doDelete();
         }
-        addBehaviour(new SearchDeliveryBehaviour(this));
+    }
+
+    @Override
+    protected void takeDown() {
+        _metrics.unregister();
     }
 }
@@ -0,0 +1,40 @@
+package org.agents;
+
+import jade.core.AID;
+import jade.core.Agent;
+import jade.lang.acl.ACLMessage;
+import lombok.Getter;
+import org.Util;
+import org.behaviours.coordinator.ReadinessBehaviour;
+
+/**
+ * Platform-wide readiness barrier that never blocks a thread. Markets and deliveries report in once they are
+ * registered, deliveries and clients subscribe to the phase they wait for and get a single message when it opens.
+ */
+@Getter
+public class CoordinatorAgent extends Agent {
+    public static final String NAME = "Coordinator";
+
+    private int _expectedMarkets;
+    private int _expectedDeliveries;
+
+    @Override
+    protected void setup() {
+        final Object[] args = getArguments();
+        _expectedMarkets = (Integer) args[0];
+        _expectedDeliveries = (Integer) args[1];
+
+        Util.log(this, "Waiting for " + _expectedMarkets + " markets and " + _expectedDeliveries + " delivery agents");
+        addBehaviour(new ReadinessBehaviour(this));
+    }
+
+    /**
+     * Sent by a market or delivery agent once it is registered in the DF and can serve requests.
+     */
+    public static void reportReady(final Agent agent, final String role) {
+        final ACLMessage ready = new ACLMessage(ACLMessage.INFORM);
+        ready.addReceiver(new AID(NAME, AID.ISLOCALNAME));
+        ready.setConversationId("readiness:" + role);
+        agent.send(ready);
+    }
+}
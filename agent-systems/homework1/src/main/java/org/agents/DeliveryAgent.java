@@ -4,53 +4,68 @@ import jade.core.AID;
 import jade.core.Agent;
 import jade.domain.DFService;
 import jade.domain.FIPAAgentManagement.DFAgentDescription;
+import jade.domain.FIPAAgentManagement.Property;
 import jade.domain.FIPAAgentManagement.ServiceDescription;
 import jade.domain.FIPAException;
 import lombok.Getter;
 import lombok.Setter;
-import org.Engine;
+import org.Settings;
 import org.Util;
+import org.behaviours.AwaitReadinessBehaviour;
+import org.behaviours.coordinator.ReadinessBehaviour;
+import org.behaviours.delivery.ClientHandlerBehaviour;
+import org.behaviours.delivery.MarketBatcher;
 import org.behaviours.delivery.SearchMarketBehaviour;
+import org.catalog.MarketCatalogCache;
+import org.directory.DirectorySnapshot;
+import org.metrics.AgentMetrics;
 import org.exceptions.InvalidServiceSpecification;
+import org.selection.MarketSelector;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
+import java.util.Map;
 
 @Getter
 public class DeliveryAgent extends Agent {
     private Double _deliveryFee;
     @Setter
     private List<AID> _markets;
-    public static CountDownLatch _latch = new CountDownLatch(Engine.deliveryAgentNumber);
+    @Setter
+    private MarketSelector _marketSelector;
+    private MarketCatalogCache _catalogCache;
+    private MarketBatcher _marketBatcher;
+    private AgentMetrics _metrics;
+    private final Map<String, ClientHandlerBehaviour> _orderHandlers = new HashMap<>();
 
     @Override
     protected void setup() {
         final Object[] args = getArguments();
         _deliveryFee = (Double) args[0];
         _markets = new ArrayList<>();
+        _marketSelector = MarketSelector.forMode(Settings.marketSelectionMode, Settings.marketSelectionBudgetMillis);
+        _catalogCache = new MarketCatalogCache(Settings.catalogTtlMillis);
+        _marketBatcher = Settings.deliveryBatchWindowMillis > 0
+                ? new MarketBatcher(this, Settings.deliveryBatchWindowMillis, Settings.deliveryBatchSize)
+                : null;
+        _metrics = AgentMetrics.register(this, _orderHandlers::size);
 
         Util.log(this, "Ready to deliver! My delivery fee is: " + _deliveryFee);
         registerDeliveryService();
+        addBehaviour(new AwaitReadinessBehaviour(this, ReadinessBehaviour.MARKETS_READY, () -> addBehaviour(new SearchMarketBehaviour(this))));
+    }
 
-
-        while (true) {
-            try {
-                MarketAgent._latch.await();
-                break;
-            } catch (InterruptedException ignored) {}
-        }
-        addBehaviour(new SearchMarketBehaviour(this));
+    @Override
+    protected void takeDown() {
+        _metrics.unregister();
     }
 
     private void registerDeliveryService() {
-        final ServiceDescription sd = new ServiceDescription();
-        sd.setType("delivery");
-        sd.setName(getLocalName());
-        sd.setOwnership(getLocalName());
-
         try {
             final DFAgentDescription dfd = new DFAgentDescription();
+            final ServiceDescription sd = DirectorySnapshot.describe(this, "delivery");
+            sd.addProperties(new Property(DirectorySnapshot.FEE, String.valueOf(_deliveryFee)));
             dfd.addServices(sd);
             DFService.register(this, dfd);
 
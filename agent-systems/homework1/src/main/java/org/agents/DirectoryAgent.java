@@ -0,0 +1,19 @@
+package org.agents;
+
+import jade.core.Agent;
+import org.Util;
+import org.behaviours.directory.DirectorySubscriptionBehaviour;
+import org.directory.DirectorySnapshot;
+
+/**
+ * One per container: keeps the container's {@link DirectorySnapshot} up to date with a single DF subscription.
+ */
+public class DirectoryAgent extends Agent {
+    public static final String NAME_PREFIX = "Directory-";
+
+    @Override
+    protected void setup() {
+        Util.log(this, "Keeping the directory snapshot of " + here().getName() + " up to date");
+        addBehaviour(new DirectorySubscriptionBehaviour(this, DirectorySnapshot.of(this)));
+    }
+}
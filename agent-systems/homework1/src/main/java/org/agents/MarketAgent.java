@@ -4,46 +4,68 @@ import jade.core.Agent;
 import jade.domain.DFService;
 import jade.domain.FIPAAgentManagement.*;
 import jade.domain.FIPAException;
+import jade.wrapper.StaleProxyException;
 import lombok.Getter;
-import org.Engine;
+import org.Settings;
 import org.Util;
+import org.behaviours.coordinator.ReadinessBehaviour;
 import org.behaviours.market.SellItemsBehaviour;
+import org.catalog.CatalogSnapshot;
+import org.codec.ItemStock;
+import org.directory.DirectorySnapshot;
+import org.exceptions.AgentContainerException;
 import org.exceptions.InvalidServiceSpecification;
+import org.metrics.AgentMetrics;
 
 import java.util.Map;
-import java.util.concurrent.CountDownLatch;
 
 @Getter
 public class MarketAgent extends Agent {
-    private Map<String, Double> _stock;
-    public static CountDownLatch _latch = new CountDownLatch(Engine.marketAgentNumber);
+    private ItemStock _stock;
+    private long _catalogVersion;
+    private AgentMetrics _metrics;
 
     @Override
     protected void setup() {
         final Object[] args = getArguments();
         //noinspection unchecked
-        _stock = (Map<String, Double>) args[0];
+        _stock = ItemStock.of((Map<String, Double>) args[0]);
+        _catalogVersion = System.currentTimeMillis();
+        _metrics = AgentMetrics.register(this);
+        CatalogSnapshot.publish(getAID(), _catalogVersion, _stock);
+        PriceOracleAgent.publishCatalog(this, _catalogVersion, _stock);
+        startReplicas();
 
         Util.log(this, "Open for business! Current stock is: " + _stock.toString());
         registerMarketService();
+        CoordinatorAgent.reportReady(this, ReadinessBehaviour.MARKET);
 
         addBehaviour(new SellItemsBehaviour(this));
     }
 
-    private void registerMarketService() {
-        final ServiceDescription sd = new ServiceDescription();
-        sd.setType("market");
-        sd.setName(getLocalName());
-        sd.setOwnership(getLocalName());
+    @Override
+    protected void takeDown() {
+        _metrics.unregister();
+    }
 
+    private void startReplicas() {
+        for (int i = 0; i < Settings.marketReplicas; i++) {
+            final String name = MarketReplicaAgent.replicaName(getLocalName(), i);
+            try {
+                getContainerController().createNewAgent(name, MarketReplicaAgent.class.getName(), new Object[]{getAID()}).start();
+            } catch (final StaleProxyException e) {
+                throw new AgentContainerException(name, e);
+            }
+        }
+    }
+
+    private void registerMarketService() {
         try {
             final DFAgentDescription dfd = new DFAgentDescription();
-            dfd.addServices(sd);
+            dfd.addServices(DirectorySnapshot.describe(this, "market", _stock.items()));
             DFService.register(this, dfd);
         } catch (FIPAException e) {
             throw new InvalidServiceSpecification(e);
-        } finally {
-            _latch.countDown();
         }
     }
 }
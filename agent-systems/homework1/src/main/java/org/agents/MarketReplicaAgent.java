@@ -0,0 +1,59 @@
+package org.agents;
+
+import jade.core.AID;
+import jade.core.Agent;
+import lombok.Getter;
+import org.Settings;
+import org.Util;
+import org.behaviours.market.ReplicaStockBehaviour;
+import org.metrics.AgentMetrics;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Answers stock queries for a market from its published {@link org.catalog.CatalogSnapshot}, so that the queries of
+ * a popular market are served by {@code market.replicas} threads instead of one. Purchases still go to the market.
+ */
+@Getter
+public class MarketReplicaAgent extends Agent {
+    public static final String PRIMARY = "primary-market";
+
+    private AID _primary;
+    private AgentMetrics _metrics;
+
+    @Override
+    protected void setup() {
+        _primary = (AID) getArguments()[0];
+        _metrics = AgentMetrics.register(this);
+
+        Util.log(this, "Serving the catalog of " + _primary.getLocalName());
+        addBehaviour(new ReplicaStockBehaviour(this));
+    }
+
+    @Override
+    protected void takeDown() {
+        _metrics.unregister();
+    }
+
+    public static String replicaName(final String marketName, final int replica) {
+        return marketName + "-replica-" + replica;
+    }
+
+    /**
+     * Where a stock query for the market goes: one of its replicas when they are on, otherwise the market itself.
+     */
+    public static AID stockResponder(final AID market) {
+        if (Settings.marketReplicas <= 0) {
+            return market;
+        }
+        return new AID(replicaName(market.getLocalName(), ThreadLocalRandom.current().nextInt(Settings.marketReplicas)), AID.ISLOCALNAME);
+    }
+
+    /**
+     * The market a stock reply speaks for, which is not its sender when a replica answered.
+     */
+    public static AID marketOf(final jade.lang.acl.ACLMessage stockReply) {
+        final String primary = stockReply.getUserDefinedParameter(PRIMARY);
+        return primary == null ? stockReply.getSender() : new AID(primary, AID.ISGUID);
+    }
+}
@@ -0,0 +1,62 @@
+package org.agents;
+
+import jade.core.AID;
+import jade.core.Agent;
+import jade.lang.acl.ACLMessage;
+import lombok.Getter;
+import org.Settings;
+import org.Util;
+import org.behaviours.oracle.PriceOracleBehaviour;
+import org.catalog.MarketCatalogCache;
+import org.codec.ItemStock;
+import org.codec.MessageCodec;
+import org.metrics.AgentMetrics;
+
+/**
+ * Keeps one price table over the catalogs of every market and answers a delivery agent's order with the cheapest
+ * cover of its items in a single round trip, instead of every delivery agent asking every market for every order.
+ * Markets send it their catalog whenever it changes; only started with {@code price.oracle=true}.
+ */
+@Getter
+public class PriceOracleAgent extends Agent {
+    public static final String NAME = "PriceOracle";
+
+    private AgentMetrics _metrics;
+
+    @Override
+    protected void setup() {
+        _metrics = AgentMetrics.register(this);
+
+        Util.log(this, "Collecting market catalogs");
+        addBehaviour(new PriceOracleBehaviour(this));
+    }
+
+    @Override
+    protected void takeDown() {
+        _metrics.unregister();
+    }
+
+    public static AID aid() {
+        return new AID(NAME, AID.ISLOCALNAME);
+    }
+
+    /**
+     * Sends a market's current catalog to the oracle, if there is one.
+     */
+    public static void publishCatalog(final MarketAgent market, final long version, final ItemStock stock) {
+        if (!Settings.priceOracle) {
+            return;
+        }
+        final ACLMessage update = new ACLMessage(ACLMessage.INFORM);
+        update.addReceiver(aid());
+        update.setConversationId("catalog:" + market.getLocalName());
+        update.addUserDefinedParameter(MarketCatalogCache.CATALOG_VERSION, String.valueOf(version));
+        final MessageCodec.StockWriter content = MessageCodec.stockWriter();
+        for (int i = 0; i < stock.size(); i++) {
+            content.add(stock.idAt(i), stock.centsAt(i));
+        }
+        content.writeTo(update);
+        market.send(update);
+        market.get_metrics().sent(update);
+    }
+}
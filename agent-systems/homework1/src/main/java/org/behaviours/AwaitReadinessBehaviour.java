@@ -0,0 +1,50 @@
+package org.behaviours;
+
+import jade.core.AID;
+import jade.core.Agent;
+import jade.core.behaviours.SimpleBehaviour;
+import jade.lang.acl.ACLMessage;
+import jade.lang.acl.MessageTemplate;
+import org.agents.CoordinatorAgent;
+
+/**
+ * Tells the coordinator that the agent waits for {@code phase} and runs {@code onReady} once the coordinator
+ * announces it. The behaviour is blocked in the meantime, so the agent thread keeps serving its other behaviours.
+ */
+public class AwaitReadinessBehaviour extends SimpleBehaviour {
+    private final String _phase;
+    private final Runnable _onReady;
+    private final MessageTemplate _template;
+    private boolean _isReady = false;
+
+    public AwaitReadinessBehaviour(final Agent agent, final String phase, final Runnable onReady) {
+        super(agent);
+        _phase = phase;
+        _onReady = onReady;
+        _template = MessageTemplate.MatchConversationId("readiness:" + phase);
+    }
+
+    @Override
+    public void onStart() {
+        final ACLMessage waiting = new ACLMessage(ACLMessage.SUBSCRIBE);
+        waiting.addReceiver(new AID(CoordinatorAgent.NAME, AID.ISLOCALNAME));
+        waiting.setConversationId("readiness:" + _phase);
+        myAgent.send(waiting);
+    }
+
+    @Override
+    public void action() {
+        final ACLMessage msg = myAgent.receive(_template);
+        if (msg != null) {
+            _isReady = true;
+            _onReady.run();
+        } else {
+            block();
+        }
+    }
+
+    @Override
+    public boolean done() {
+        return _isReady;
+    }
+}
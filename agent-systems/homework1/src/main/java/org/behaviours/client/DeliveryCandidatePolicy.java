@@ -0,0 +1,59 @@
+package org.behaviours.client;
+
+import jade.core.AID;
+import lombok.Getter;
+import org.Settings;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Which delivery agents a client sends its order to. By default every one of them; with {@code client.delivery.k}
+ * only k, picked by {@code client.delivery.choice}: the k with the lowest advertised fee, k at random, or half of
+ * them by fee and the rest at random, so that the clients do not all crowd the same few cheapest agents.
+ */
+@Getter
+public class DeliveryCandidatePolicy {
+    private final int _k;
+    private final DeliveryChoice _choice;
+
+    public DeliveryCandidatePolicy(final int k, final DeliveryChoice choice) {
+        _k = k;
+        _choice = choice;
+    }
+
+    public static DeliveryCandidatePolicy fromSettings() {
+        return new DeliveryCandidatePolicy(Settings.clientDeliveryK, Settings.clientDeliveryChoice);
+    }
+
+    /**
+     * The agents to order from; fees are NaN for agents that did not advertise one, which count as the most expensive.
+     */
+    public List<AID> choose(final List<AID> deliveries, final ToDoubleFunction<AID> fees, final Random random) {
+        if (_k <= 0 || deliveries.size() <= _k) {
+            return deliveries;
+        }
+        final int byFee = switch (_choice) {
+            case CHEAPEST -> _k;
+            case RANDOM -> 0;
+            case MIXED -> (_k + 1) / 2;
+        };
+
+        final List<AID> candidates = new ArrayList<>(deliveries);
+        if (byFee > 0) {
+            // Shuffled first so that agents with the same fee share the load.
+            Collections.shuffle(candidates, random);
+            candidates.sort(Comparator.comparingDouble(delivery -> {
+                final double fee = fees.applyAsDouble(delivery);
+                return Double.isNaN(fee) ? Double.MAX_VALUE : fee;
+            }));
+        }
+        final List<AID> rest = candidates.subList(byFee, candidates.size());
+        Collections.shuffle(rest, random);
+        return new ArrayList<>(candidates.subList(0, _k));
+    }
+}
@@ -0,0 +1,7 @@
+package org.behaviours.client;
+
+public enum DeliveryChoice {
+    CHEAPEST,
+    RANDOM,
+    MIXED
+}
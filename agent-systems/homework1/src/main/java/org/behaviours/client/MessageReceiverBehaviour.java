@@ -6,18 +6,31 @@ import jade.lang.acl.ACLMessage;
 import org.Engine;
 import org.Util;
 import org.agents.ClientAgent;
+import org.codec.MessageCodec;
+import org.exceptions.InvalidMessageContentException;
+import org.logging.LogLevel;
+import org.metrics.RunStats;
+import org.tracing.OrderTracer;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.CountDownLatch;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class MessageReceiverBehaviour extends CyclicBehaviour {
     private final ClientAgent _clientAgent;
     private final Map<AID, Double> _offers = new HashMap<>();
+    private final OfferCollectionPolicy _policy = OfferCollectionPolicy.fromSettings();
     private int _receivedMessages = 0;
-    private static final CountDownLatch _latch = new CountDownLatch(Engine.clientAgentNumber);
-    private static final CountDownLatch _finalLatch = new CountDownLatch(Engine.clientAgentNumber);
+    private final Set<AID> _refusedBy = new HashSet<>();
+    private double _bestPrice = Double.MAX_VALUE;
+    private long _selectedNanos = 0;
+    private static final AtomicInteger _selectedClients = new AtomicInteger();
+    private static final AtomicInteger _deliveredClients = new AtomicInteger();
+    private static final AtomicBoolean _firstQuote = new AtomicBoolean();
 
     public MessageReceiverBehaviour(ClientAgent clientAgent) {
         super(clientAgent);
@@ -26,43 +39,100 @@ public class MessageReceiverBehaviour extends CyclicBehaviour {
 
     @Override
     public void action() {
-        if (_receivedMessages >= _clientAgent.get_delivery().size() && _clientAgent.is_offerNotSelected()) {
-            _clientAgent.set_offerNotSelected(false);
-            SelectBestOffer();
+        if (_clientAgent.is_offerNotSelected() && _clientAgent.get_orderSentNanos() > 0) {
+            String stopReason = _policy.stopReason(_receivedMessages, expectedOffers(), _bestPrice, waitedMillis());
+            if (stopReason != null) {
+                _clientAgent.set_offerNotSelected(false);
+                _selectedNanos = System.nanoTime();
+                Util.log(_clientAgent, String.format(Locale.US, "Stopped collecting offers after %d ms (%s, %d of %d offers)",
+                        waitedMillis(), stopReason, _receivedMessages, expectedOffers()));
+                RunStats.offersCollected(_selectedNanos - _clientAgent.get_orderSentNanos(),
+                        _receivedMessages < expectedOffers());
+                SelectBestOffer();
+            }
         }
 
         ACLMessage msg = _clientAgent.receive();
         if (msg != null) {
+            _clientAgent.get_metrics().received(msg);
             String convoId = msg.getConversationId();
-            if (convoId != null && convoId.startsWith("order-price:")) {
-                double price = Double.parseDouble(msg.getContent());
+            if (convoId != null && convoId.startsWith("order-price:")
+                    && (msg.getPerformative() == ACLMessage.REFUSE || msg.getPerformative() == ACLMessage.NOT_UNDERSTOOD)) {
+                // The delivery agent had too many open orders, could not price this one or could not read it; there is no offer to wait for.
+                Util.log(_clientAgent, "Order refused by " + msg.getSender().getLocalName() + ": " + msg.getContent());
+                _refusedBy.add(msg.getSender());
+
+            } else if (convoId != null && convoId.startsWith("order-price:") && !_clientAgent.is_offerNotSelected()) {
+                // Its delivery agent was already told no when the offers were picked.
+                long lateNanos = System.nanoTime() - _selectedNanos;
+                Util.log(_clientAgent, String.format(Locale.US, "Ignoring late offer from %s, %.0f ms after picking", msg.getSender().getLocalName(), lateNanos / 1e6));
+                RunStats.lateOffer(lateNanos);
+
+            } else if (convoId != null && convoId.startsWith("order-price:")) {
+                double price;
+                try {
+                    price = MessageCodec.readPrice(msg);
+                } catch (InvalidMessageContentException e) {
+                    Util.log(_clientAgent, LogLevel.WARN, "Error parsing offer from " + msg.getSender().getLocalName() + ": " + e.getCause().getMessage());
+                    _refusedBy.add(msg.getSender());
+                    return;
+                }
+                if (_firstQuote.compareAndSet(false, true)) {
+                    Util.log(_clientAgent, String.format(Locale.US, "First quote of the run arrived %.0f ms after launch", (System.nanoTime() - Engine.launchNanos) / 1e6));
+                }
                 _offers.put(msg.getSender(), price);
+                _bestPrice = Math.min(_bestPrice, price);
+                RunStats.quoteReceived(_clientAgent.getLocalName());
+                _clientAgent.get_metrics().quoted(System.nanoTime() - _clientAgent.get_orderSentNanos());
+                OrderTracer.span(_clientAgent, "wait for quote", convoId, _clientAgent.get_orderSentNanos(), System.nanoTime());
                 Util.log(_clientAgent, "Received offer from " + msg.getSender().getLocalName() + ": " + String.format(Locale.US, "%.2f", price));
                 _receivedMessages++;
 
+            } else if (convoId != null && convoId.startsWith("delivery-confirm:") && msg.getPerformative() == ACLMessage.FAILURE) {
+                Util.log(_clientAgent, "Delivery failed: " + msg.getContent());
+                RunStats.failed(_clientAgent.getLocalName());
+                _clientAgent.orderFinished();
+
             } else if (convoId != null && convoId.startsWith("delivery-confirm:")) {
-                if (_finalLatch.getCount() == 1) {
-                    System.out.println("-------ALL CLIENTS ARE RECEIVING THEIR ORDERS!!!-------");
-                }
-                _finalLatch.countDown();
-                while (true) {
-                    try {
-                        _finalLatch.await();
-                        break;
-                    } catch (InterruptedException ignored) {}
+                Util.log(_clientAgent, "Got the order! Deliverer says: " + msg.getContent());
+                RunStats.delivered(_clientAgent.getLocalName());
+                _clientAgent.get_metrics().delivered(System.nanoTime() - _clientAgent.get_orderSentNanos());
+                OrderTracer.span(_clientAgent, "order", convoId, _clientAgent.get_orderSentNanos(), System.nanoTime());
+                _clientAgent.orderFinished();
+                if (_deliveredClients.incrementAndGet() == Engine.clientAgentNumber) {
+                    System.out.println("-------ALL CLIENTS HAVE RECEIVED THEIR ORDERS!!!-------");
                 }
 
-                Util.log(_clientAgent, "Got the order! Deliverer says: " + msg.getContent());
+            } else {
+                // Not part of this order; waiting on must still end at the offer deadline.
+                blockUntilDeadline();
+            }
+        } else {
+            blockUntilDeadline();
+        }
+    }
 
-            } else block();
+    private void blockUntilDeadline() {
+        if (_clientAgent.is_offerNotSelected() && _clientAgent.get_orderSentNanos() > 0 && _policy.get_deadlineMillis() > 0) {
+            block(_policy.remainingMillis(waitedMillis()));
         } else {
             block();
         }
     }
 
+    private int expectedOffers() {
+        return _clientAgent.get_delivery().size() - _refusedBy.size();
+    }
+
+    private long waitedMillis() {
+        return (System.nanoTime() - _clientAgent.get_orderSentNanos()) / 1_000_000;
+    }
+
     private void SelectBestOffer() {
         if (_offers.isEmpty()) {
             Util.log(_clientAgent, "No offers received");
+            RunStats.failed(_clientAgent.getLocalName());
+            _clientAgent.orderFinished();
         } else {
             AID bestDelivery = null;
             double bestPrice = Double.MAX_VALUE;
@@ -73,19 +143,15 @@ public class MessageReceiverBehaviour extends CyclicBehaviour {
                 }
             }
             if (bestDelivery != null) {
-                if (_latch.getCount() == 1)
-                    System.out.println("-----RESULTS-----");
-
-                _latch.countDown();
-                while (true) {
-                    try {
-                        _latch.await();
-                        break;
-                    } catch (InterruptedException ignored) {}
-                }
                 Util.log(_clientAgent, "Selected delivery agent: " + bestDelivery.getLocalName() + " with price " + String.format(Locale.US, "%.2f (Received offers was: %d)", bestPrice, _receivedMessages));
+                if (_selectedClients.incrementAndGet() == Engine.clientAgentNumber) {
+                    System.out.println("-----ALL CLIENTS HAVE SELECTED THEIR DELIVERY-----");
+                }
 
                 for (var delivery : _clientAgent.get_delivery()) {
+                    if (_refusedBy.contains(delivery)) {
+                        continue;
+                    }
                     String convoId = _clientAgent.get_orderConvoIds().get(delivery);
                     ACLMessage deliveryConfirm = new ACLMessage(ACLMessage.INFORM);
                     deliveryConfirm.addReceiver(delivery);
@@ -93,6 +159,7 @@ public class MessageReceiverBehaviour extends CyclicBehaviour {
                     deliveryConfirm.setContent(delivery.equals(bestDelivery) ? "message-delivery-confirm" : "message-delivery-reject");
 
                     _clientAgent.send(deliveryConfirm);
+                    _clientAgent.get_metrics().sent(deliveryConfirm);
                 }
             }
         }
@@ -0,0 +1,49 @@
+package org.behaviours.client;
+
+import lombok.Getter;
+import org.Settings;
+
+/**
+ * When a client stops collecting offers and picks the best one. By default it waits for every delivery agent;
+ * a deadline ({@code offer.deadline.ms}), a number of offers ({@code offer.first.k}) and a good-enough price
+ * ({@code offer.target.price}) each end the collection earlier, whichever comes first.
+ */
+@Getter
+public class OfferCollectionPolicy {
+    private final long _deadlineMillis;
+    private final int _firstK;
+    private final double _targetPrice;
+
+    public OfferCollectionPolicy(final long deadlineMillis, final int firstK, final double targetPrice) {
+        _deadlineMillis = deadlineMillis;
+        _firstK = firstK;
+        _targetPrice = targetPrice;
+    }
+
+    public static OfferCollectionPolicy fromSettings() {
+        return new OfferCollectionPolicy(Settings.offerDeadlineMillis, Settings.offerFirstK, Settings.offerTargetPrice);
+    }
+
+    /**
+     * Why the collection is over, or {@code null} while it should go on.
+     */
+    public String stopReason(final int offers, final int expectedOffers, final double bestPrice, final long waitedMillis) {
+        if (offers >= expectedOffers) {
+            return "all offers";
+        }
+        if (_firstK > 0 && offers >= _firstK) {
+            return "first " + _firstK + " offers";
+        }
+        if (_targetPrice > 0 && offers > 0 && bestPrice <= _targetPrice) {
+            return "target price";
+        }
+        if (_deadlineMillis > 0 && waitedMillis >= _deadlineMillis) {
+            return "deadline";
+        }
+        return null;
+    }
+
+    public long remainingMillis(final long waitedMillis) {
+        return _deadlineMillis > 0 ? Math.max(1, _deadlineMillis - waitedMillis) : 0;
+    }
+}
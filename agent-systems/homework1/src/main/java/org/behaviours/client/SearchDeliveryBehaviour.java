@@ -2,14 +2,12 @@ package org.behaviours.client;
 
 import jade.core.AID;
 import jade.core.behaviours.OneShotBehaviour;
-import jade.domain.DFService;
-import jade.domain.FIPAAgentManagement.DFAgentDescription;
-import jade.domain.FIPAAgentManagement.ServiceDescription;
 import org.Util;
 import org.agents.ClientAgent;
+import org.directory.DirectorySnapshot;
 
-import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class SearchDeliveryBehaviour extends OneShotBehaviour {
     private final ClientAgent _clientAgent;
@@ -23,22 +21,16 @@ public class SearchDeliveryBehaviour extends OneShotBehaviour {
     public void action() {
         Util.log(_clientAgent, "Searching for avaiable delivery services...");
 
-        final ServiceDescription sd = new ServiceDescription();
-        sd.setType("delivery");
-
         try {
-            final DFAgentDescription dfd = new DFAgentDescription();
-            dfd.addServices(sd);
-            final DFAgentDescription[] resultDelivery = DFService.search(_clientAgent, dfd);
-
-            final List<AID> deliveries = Arrays.stream(resultDelivery)
-                    .map(DFAgentDescription::getName)
-                    .toList();
+            final DirectorySnapshot directory = DirectorySnapshot.of(_clientAgent);
+            final List<AID> found = directory.providers(_clientAgent, "delivery");
+            final List<AID> deliveries = DeliveryCandidatePolicy.fromSettings().choose(found, directory::fee, ThreadLocalRandom.current());
 
             deliveries.forEach(delivery -> Util.log(_clientAgent, "Found delivery service: " + delivery));
+            if (deliveries.size() < found.size()) {
+                Util.log(_clientAgent, "Ordering from " + deliveries.size() + " of " + found.size() + " delivery services");
+            }
             _clientAgent.get_delivery().addAll(deliveries);
-        } catch (final Exception e) {
-            throw new RuntimeException(e);
         } finally {
             _clientAgent.addBehaviour(new SendOrderBehaviour(_clientAgent));
             _clientAgent.addBehaviour(new MessageReceiverBehaviour(_clientAgent));
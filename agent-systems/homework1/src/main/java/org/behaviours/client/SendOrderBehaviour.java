@@ -4,6 +4,8 @@ import jade.core.behaviours.OneShotBehaviour;
 import jade.lang.acl.ACLMessage;
 import org.Util;
 import org.agents.ClientAgent;
+import org.codec.MessageCodec;
+import org.metrics.RunStats;
 
 import java.util.UUID;
 
@@ -19,14 +21,16 @@ public class SendOrderBehaviour extends OneShotBehaviour {
     public void action() {
         if (_clientAgent.get_delivery().isEmpty()) {
             Util.log(_clientAgent, "No delivery found");
+            RunStats.failed(_clientAgent.getLocalName());
+            _clientAgent.orderFinished();
             return;
         }
 
-        String orderContent = String.join(",", _clientAgent.get_order());
-
+        RunStats.orderSent(_clientAgent.getLocalName());
+        _clientAgent.set_orderSentNanos(System.nanoTime());
         for (var delivery : _clientAgent.get_delivery()) {
             ACLMessage orderMsg = new ACLMessage(ACLMessage.REQUEST);
-            orderMsg.setContent(orderContent);
+            MessageCodec.writeItems(orderMsg, _clientAgent.get_order());
             orderMsg.addReceiver(delivery);
             String token = UUID.randomUUID().toString();
             orderMsg.setConversationId(String.format("order:%s-%s:%s", _clientAgent.getLocalName(), delivery.getLocalName(), token));
@@ -34,6 +38,7 @@ public class SendOrderBehaviour extends OneShotBehaviour {
 
             Util.log(_clientAgent, "Order sent to [" + delivery.getLocalName() + "]");
             _clientAgent.send(orderMsg);
+            _clientAgent.get_metrics().sent(orderMsg);
         }
     }
 }
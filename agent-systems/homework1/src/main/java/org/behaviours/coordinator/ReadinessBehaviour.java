@@ -0,0 +1,86 @@
+package org.behaviours.coordinator;
+
+import jade.core.AID;
+import jade.core.behaviours.CyclicBehaviour;
+import jade.lang.acl.ACLMessage;
+import org.Util;
+import org.agents.CoordinatorAgent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ReadinessBehaviour extends CyclicBehaviour {
+    public static final String MARKET = "market";
+    public static final String DELIVERY = "delivery";
+    public static final String MARKETS_READY = "markets-ready";
+    public static final String DELIVERIES_READY = "deliveries-ready";
+
+    private final CoordinatorAgent _coordinatorAgent;
+    private final List<AID> _waitingForMarkets = new ArrayList<>();
+    private final List<AID> _waitingForDeliveries = new ArrayList<>();
+    private int _readyMarkets = 0;
+    private int _readyDeliveries = 0;
+
+    public ReadinessBehaviour(CoordinatorAgent coordinatorAgent) {
+        super(coordinatorAgent);
+        _coordinatorAgent = coordinatorAgent;
+    }
+
+    @Override
+    public void action() {
+        ACLMessage msg = _coordinatorAgent.receive();
+        if (msg == null) {
+            block();
+            return;
+        }
+
+        String cid = msg.getConversationId();
+        if (cid == null || !cid.startsWith("readiness:")) {
+            return;
+        }
+
+        switch (cid.substring("readiness:".length())) {
+            case MARKET -> {
+                if (++_readyMarkets == _coordinatorAgent.get_expectedMarkets()) {
+                    Util.log(_coordinatorAgent, "All " + _readyMarkets + " markets are open, releasing delivery agents");
+                }
+                release(_waitingForMarkets, MARKETS_READY, marketsReady());
+            }
+            case DELIVERY -> {
+                if (++_readyDeliveries == _coordinatorAgent.get_expectedDeliveries()) {
+                    Util.log(_coordinatorAgent, "All " + _readyDeliveries + " delivery agents are ready, releasing clients");
+                }
+                release(_waitingForDeliveries, DELIVERIES_READY, deliveriesReady());
+            }
+            case MARKETS_READY -> {
+                _waitingForMarkets.add(msg.getSender());
+                release(_waitingForMarkets, MARKETS_READY, marketsReady());
+            }
+            case DELIVERIES_READY -> {
+                _waitingForDeliveries.add(msg.getSender());
+                release(_waitingForDeliveries, DELIVERIES_READY, deliveriesReady());
+            }
+            default -> Util.log(_coordinatorAgent, "Unknown readiness phase: " + cid);
+        }
+    }
+
+    private boolean marketsReady() {
+        return _readyMarkets >= _coordinatorAgent.get_expectedMarkets();
+    }
+
+    private boolean deliveriesReady() {
+        return _readyDeliveries >= _coordinatorAgent.get_expectedDeliveries();
+    }
+
+    private void release(List<AID> waiting, String phase, boolean isReady) {
+        if (!isReady || waiting.isEmpty()) {
+            return;
+        }
+
+        ACLMessage ready = new ACLMessage(ACLMessage.INFORM);
+        ready.setConversationId("readiness:" + phase);
+        waiting.forEach(ready::addReceiver);
+        _coordinatorAgent.send(ready);
+        waiting.clear();
+    }
+}
@@ -1,26 +1,60 @@
 package org.behaviours.delivery;
 
 import jade.core.AID;
-import jade.core.behaviours.CyclicBehaviour;
+import jade.core.behaviours.Behaviour;
 import jade.lang.acl.ACLMessage;
-import jade.lang.acl.MessageTemplate;
+import org.Settings;
 import org.Util;
 import org.agents.DeliveryAgent;
+import org.agents.MarketReplicaAgent;
+import org.agents.PriceOracleAgent;
+import org.catalog.MarketCatalogCache;
+import org.codec.ItemStock;
+import org.codec.MessageCodec;
+import org.directory.DirectorySnapshot;
+import org.exceptions.InvalidMessageContentException;
+import org.logging.LogLevel;
+import org.metrics.RunStats;
+import org.selection.MarketSelection;
+import org.selection.SelectionWorkers;
+import org.tracing.OrderTracer;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
-public class ClientHandlerBehaviour extends CyclicBehaviour {
+/**
+ * Everything a delivery agent does for one order, from the stock queries to the delivery. The handler ends once the
+ * delivery is confirmed, the client picks someone else or {@code delivery.order.timeout.ms} runs out, and its order
+ * then leaves {@link DeliveryAgent#get_orderHandlers()}, so nothing of a finished order stays reachable.
+ */
+public class ClientHandlerBehaviour extends Behaviour {
     private final DeliveryAgent _deliveryAgent;
-    private final Map<AID, Map<String, Double>> _marketStocks = new HashMap<>();
+    private final Map<AID, ItemStock> _marketStocks = new HashMap<>();
     private final List<AID> _selectedMarkets = new ArrayList<>();
     private boolean _isFinalizing = false;
     private boolean _hasCalculatedCost = false;
+    private boolean _isConfirmed = false;
+    private boolean _isRejected = false;
+    private boolean _isClosed = false;
     private final AID _clientAID;
     private final List<String> _orderItems;
     private int _marketSellResponses = 0;
     private int _marketQueryResponses = 0;
     private final String _orderConvoId;
     private final Map<AID, List<String>> _marketItems = new HashMap<>();
+    private final Map<AID, Set<String>> _queriedItems = new HashMap<>();
+    private final Map<AID, Integer> _refusals = new HashMap<>();
+    private int _abandonedMarkets = 0;
+    private final Deque<ACLMessage> _inbox = new ArrayDeque<>();
+    private final List<AID> _candidateMarkets;
+    private final Set<AID> _answeredMarkets = new HashSet<>();
+    private final Set<AID> _soldMarkets = new HashSet<>();
+    private final long _queryStartNanos = System.nanoTime();
+    private long _buyStartNanos = 0;
+    private long _costStartNanos = 0;
+    private long _quotedNanos = 0;
+    private CompletableFuture<MarketSelection> _selection;
 
     public ClientHandlerBehaviour(DeliveryAgent deliveryAgent, AID clientAID, List<String> orderItems, String orderConvoId) {
         super(deliveryAgent);
@@ -29,157 +63,418 @@ public class ClientHandlerBehaviour extends CyclicBehaviour {
         _orderItems = orderItems;
         _orderConvoId = orderConvoId;
 
-        ACLMessage query = new ACLMessage(ACLMessage.REQUEST);
-        query.setConversationId(String.format("stock-query:%s", _orderConvoId));
-        for (AID market : _deliveryAgent.get_markets()) {
-            query.addReceiver(market);
+        if (Settings.priceOracle) {
+            // The oracle answers for every market at once; its cover counts as the one answer this order waits for.
+            _candidateMarkets = List.of(PriceOracleAgent.aid());
+            Util.log(_deliveryAgent, "Asking the price oracle for the cheapest markets...");
+            ACLMessage query = new ACLMessage(ACLMessage.REQUEST);
+            query.addReceiver(PriceOracleAgent.aid());
+            query.setConversationId(String.format("cover-query:%s", _orderConvoId));
+            MessageCodec.writeItems(query, _orderItems);
+            _deliveryAgent.send(query);
+            _deliveryAgent.get_metrics().sent(query);
+            return;
         }
-        Util.log(_deliveryAgent, "Sending stock queries to markets...");
-        _deliveryAgent.send(query);
-    }
 
-    @Override
-    public void action() {
-        if (_marketSellResponses >= _selectedMarkets.size() && !_isFinalizing && _hasCalculatedCost) {
-            _isFinalizing = true;
-            ACLMessage reply = new ACLMessage(ACLMessage.INFORM);
-            reply.addReceiver(_clientAID);
-            reply.setConversationId(String.format("delivery-confirm:%s", _orderConvoId));
-            reply.setContent("Here is your delivery, enjoy!");
+        MarketCatalogCache cache = _deliveryAgent.get_catalogCache();
+        Set<String> requestedItems = new LinkedHashSet<>(_orderItems);
+        _candidateMarkets = Settings.directoryItemIndex
+                ? DirectorySnapshot.of(_deliveryAgent).carrying(_deliveryAgent.get_markets(), requestedItems)
+                : _deliveryAgent.get_markets();
+        // Every market without a cached catalog is asked for the same items; those markets share one set.
+        Map<Set<String>, Set<String>> distinctQueries = new HashMap<>();
+        for (AID market : _candidateMarkets) {
+            Set<String> unresolved = new LinkedHashSet<>();
+            ItemStock knownStock = cache.lookup(market, requestedItems, unresolved);
+            if (!knownStock.isEmpty()) {
+                _marketStocks.put(market, knownStock);
+            }
+            if (unresolved.isEmpty()) {
+                _marketQueryResponses++;
+            } else {
+                _queriedItems.put(market, distinctQueries.computeIfAbsent(unresolved, Collections::unmodifiableSet));
+            }
+        }
 
-            _deliveryAgent.send(reply);
+        if (_queriedItems.isEmpty()) {
+            Util.log(_deliveryAgent, () -> "Quoting from cached catalogs (cache hits: " + cache.get_hits() + ", misses: " + cache.get_misses() + ")");
+        } else if (_deliveryAgent.get_marketBatcher() != null) {
+            Util.log(_deliveryAgent, () -> "Batching stock queries to " + _queriedItems.size() + " of " + _deliveryAgent.get_markets().size() + " markets...");
+            _deliveryAgent.get_marketBatcher().queryStock(this);
+        } else {
+            Util.log(_deliveryAgent, () -> "Sending stock queries to " + _queriedItems.size() + " of " + _deliveryAgent.get_markets().size() + " markets...");
+            sendStockQueries(_deliveryAgent, _queriedItems, String.format("stock-query:%s", _orderConvoId));
         }
+    }
 
-        if (_marketQueryResponses >= _deliveryAgent.get_markets().size() && !_hasCalculatedCost) {
-            _hasCalculatedCost = true;
-            CalculateCosts();
+    /**
+     * One query per distinct item set, addressed to every market that is asked for exactly that set.
+     */
+    static Collection<ACLMessage> stockQueries(final Map<AID, ? extends Collection<String>> marketItems, final String conversationId) {
+        Map<Collection<String>, ACLMessage> queries = new LinkedHashMap<>();
+        for (Map.Entry<AID, ? extends Collection<String>> entry : marketItems.entrySet()) {
+            queries.computeIfAbsent(entry.getValue(), items -> {
+                ACLMessage query = new ACLMessage(ACLMessage.REQUEST);
+                query.setConversationId(conversationId);
+                MessageCodec.writeItems(query, items);
+                return query;
+            }).addReceiver(MarketReplicaAgent.stockResponder(entry.getKey()));
         }
+        return queries.values();
+    }
 
-        MessageTemplate mt = new MessageTemplate((MessageTemplate.MatchExpression) msg -> {
-            String cid = msg.getConversationId();
-            return cid != null && (
-                    cid.equals("stock-query:" + _orderConvoId) ||
-                            cid.equals("delivery-confirm:" + _orderConvoId) ||
-                            cid.equals("market-buy:" + _orderConvoId)
-            );
-        });
+    static void sendStockQueries(final DeliveryAgent deliveryAgent, final Map<AID, ? extends Collection<String>> marketItems, final String conversationId) {
+        for (ACLMessage query : stockQueries(marketItems, conversationId)) {
+            deliveryAgent.send(query);
+            deliveryAgent.get_metrics().sent(query);
+        }
+    }
 
-        ACLMessage msg = _deliveryAgent.receive(mt);
+    /**
+     * Hands over a message of this order; called by the {@link OrderDispatcherBehaviour}.
+     */
+    public void dispatch(ACLMessage msg) {
+        _inbox.add(msg);
+        restart();
+    }
 
-        if (msg != null) {
-            String cid = msg.getConversationId();
-            if (cid.equals("stock-query:" + _orderConvoId)) {
-                Map<String, Double> stock = parseStock(msg.getContent());
-                _marketStocks.put(msg.getSender(), stock);
-                Util.log(_deliveryAgent, "<- [" + msg.getSender().getLocalName() + "] Received stock from market");
-                _marketQueryResponses++;
-            } else if (cid.equals("delivery-confirm:" + _orderConvoId)) {
-                Util.log(_deliveryAgent, "Received message from " + msg.getSender().getLocalName() + ": " + (msg.getContent().equals("message-delivery-confirm") ? "I want to buy from you!" : "I do not want what you are selling"));
-                if (msg.getContent().equals("message-delivery-confirm")) {
-                    Util.log(_deliveryAgent, "Buying needed items from markets...");
-                    buyItemsFromMarket();
+    @Override
+    public void action() {
+        ACLMessage msg;
+        while ((msg = _inbox.poll()) != null) {
+            handleMessage(msg);
+        }
+        if (_isRejected) {
+            // The client picked someone else; neither a quote still being computed nor late stock is needed.
+            _isClosed = true;
+        } else if (!_isFinalizing && isPastDeadline(_queryStartNanos, Settings.deliveryOrderTimeoutMillis)) {
+            Util.log(_deliveryAgent, LogLevel.WARN, () -> "Giving up on the order of " + _clientAID.getLocalName() + " after "
+                    + Settings.deliveryOrderTimeoutMillis + " ms");
+            RunStats.orderExpired();
+            if (_isConfirmed) {
+                // The client waits for this delivery alone; it records the order as failed on the FAILURE.
+                failDelivery("order expired");
+            }
+            _isClosed = true;
+        }
+        if (_isClosed) {
+            return;
+        }
+
+        if (!_hasCalculatedCost && !_isRejected) {
+            boolean allAnswered = _marketQueryResponses >= _candidateMarkets.size();
+            if (allAnswered || isPastDeadline(_queryStartNanos, Settings.deliveryQueryDeadlineMillis)) {
+                _hasCalculatedCost = true;
+                if (!allAnswered) {
+                    Util.log(_deliveryAgent, LogLevel.WARN, () -> "Quoting from " + _marketQueryResponses + " of " + _candidateMarkets.size()
+                            + " markets, the rest did not answer within " + Settings.deliveryQueryDeadlineMillis + " ms");
                 }
-            } else if (cid.equals("market-buy:" + _orderConvoId)) {
-                Util.log(_deliveryAgent, "Received items from market " + msg.getSender().getLocalName());
-                _marketSellResponses++;
+                RunStats.quoteComputed(!allAnswered || _abandonedMarkets > 0);
+                _costStartNanos = System.nanoTime();
+                OrderTracer.span(_deliveryAgent, "collect stock", "stock-query:" + _orderConvoId, _queryStartNanos, _costStartNanos);
+                CalculateCosts();
             }
+        }
+
+        if (!_isFinalizing && _hasCalculatedCost && _isConfirmed) {
+            boolean allSold = _marketSellResponses >= _selectedMarkets.size();
+            if (allSold || isPastDeadline(_buyStartNanos, Settings.deliveryBuyDeadlineMillis)) {
+                _isFinalizing = true;
+                if (!allSold) {
+                    Util.log(_deliveryAgent, LogLevel.WARN, () -> "Delivering without " + (_selectedMarkets.size() - _marketSellResponses)
+                            + " markets that did not sell within " + Settings.deliveryBuyDeadlineMillis + " ms");
+                }
+                RunStats.deliveryFinished(!allSold);
+                confirmDelivery();
+                OrderTracer.span(_deliveryAgent, "buy from markets", "market-buy:" + _orderConvoId, _buyStartNanos, System.nanoTime());
+                _deliveryAgent.get_metrics().delivered(System.nanoTime() - _queryStartNanos);
+                _isClosed = true;
+                return;
+            }
+        }
+
+        long remaining = remainingMillis();
+        if (remaining > 0) {
+            block(remaining);
         } else {
             block();
         }
     }
 
-    private void CalculateCosts() {
-        List<String> remainingItems = new ArrayList<>(_orderItems);
-        double totalCost = 0.0;
-
-        while (!remainingItems.isEmpty()) {
-            AID selectedMarket = null;
-            List<String> selectedItems = new ArrayList<>();
-            int maxItemsCount = 0;
-            double selectedMarketCost = 0.0;
-
-            for (Map.Entry<AID, Map<String, Double>> entry : _marketStocks.entrySet()) {
-                AID market = entry.getKey();
-                Map<String, Double> stock = entry.getValue();
-                List<String> avaiableItems = new ArrayList<>();
-                double costForMarket = 0.0;
-                for (String item : remainingItems) {
-                    if (stock.containsKey(item)) {
-                        avaiableItems.add(item);
-                        costForMarket += stock.get(item);
-                    }
-                }
+    @Override
+    public boolean done() {
+        return _isClosed;
+    }
 
-                int availableCount = avaiableItems.size();
-                if (availableCount > maxItemsCount) {
-                    maxItemsCount = availableCount;
-                    selectedMarket = market;
-                    selectedItems = avaiableItems;
-                    selectedMarketCost = costForMarket;
-                } else if (availableCount == maxItemsCount && availableCount > 0) {
-                    if (costForMarket < selectedMarketCost) {
-                        selectedMarket = market;
-                        selectedItems = avaiableItems;
-                        selectedMarketCost = costForMarket;
-                    }
-                }
+    @Override
+    public int onEnd() {
+        _deliveryAgent.get_orderHandlers().remove(_orderConvoId);
+        if (_deliveryAgent.get_marketBatcher() != null) {
+            _deliveryAgent.get_marketBatcher().orderClosed(this);
+        }
+        RunStats.orderClosed();
+        return 0;
+    }
+
+    private void confirmDelivery() {
+        ACLMessage reply = new ACLMessage(ACLMessage.INFORM);
+        reply.addReceiver(_clientAID);
+        reply.setConversationId(String.format("delivery-confirm:%s", _orderConvoId));
+        reply.setContent("Here is your delivery, enjoy!");
+
+        _deliveryAgent.send(reply);
+        _deliveryAgent.get_metrics().sent(reply);
+    }
+
+    private void failDelivery(String reason) {
+        ACLMessage failure = new ACLMessage(ACLMessage.FAILURE);
+        failure.addReceiver(_clientAID);
+        failure.setConversationId(String.format("delivery-confirm:%s", _orderConvoId));
+        failure.setContent(reason);
+
+        _deliveryAgent.send(failure);
+        _deliveryAgent.get_metrics().sent(failure);
+    }
+
+    private static boolean isPastDeadline(final long startNanos, final long deadlineMillis) {
+        return deadlineMillis > 0 && startNanos > 0 && System.nanoTime() - startNanos >= deadlineMillis * 1_000_000;
+    }
+
+    /**
+     * Time left until the deadline of the phase this order waits in or the order timeout, whichever comes first;
+     * 0 when it waits without either.
+     */
+    private long remainingMillis() {
+        long phase = phaseRemainingMillis();
+        if (Settings.deliveryOrderTimeoutMillis <= 0) {
+            return phase;
+        }
+        long order = Math.max(1, Settings.deliveryOrderTimeoutMillis - (System.nanoTime() - _queryStartNanos) / 1_000_000);
+        return phase > 0 ? Math.min(phase, order) : order;
+    }
+
+    private long phaseRemainingMillis() {
+        long startNanos;
+        long deadlineMillis;
+        if (!_hasCalculatedCost && !_isRejected) {
+            startNanos = _queryStartNanos;
+            deadlineMillis = Settings.deliveryQueryDeadlineMillis;
+        } else if (!_isFinalizing && _isConfirmed) {
+            startNanos = _buyStartNanos;
+            deadlineMillis = Settings.deliveryBuyDeadlineMillis;
+        } else {
+            return 0;
+        }
+        if (deadlineMillis <= 0) {
+            return 0;
+        }
+        return Math.max(1, deadlineMillis - (System.nanoTime() - startNanos) / 1_000_000);
+    }
+
+    private void handleMessage(ACLMessage msg) {
+        String cid = msg.getConversationId();
+        if (cid.startsWith("quote-ready:")) {
+            sendQuote();
+        } else if (cid.startsWith("cover-query:")) {
+            acceptCover(msg);
+        } else if (cid.startsWith("stock-query:") && msg.getPerformative() == ACLMessage.REFUSE) {
+            retryStockQuery(msg);
+        } else if (cid.startsWith("stock-query:")) {
+            AID market = MarketReplicaAgent.marketOf(msg);
+            ItemStock stock = parseStock(_deliveryAgent, msg);
+            // Even a late answer is worth caching for the next orders.
+            _deliveryAgent.get_catalogCache().put(market, _queriedItems.getOrDefault(market, Set.of()), stock,
+                    MarketCatalogCache.parseVersion(msg.getUserDefinedParameter(MarketCatalogCache.CATALOG_VERSION)));
+            acceptStock(market, stock);
+        } else if (cid.startsWith("delivery-confirm:")) {
+            Util.log(_deliveryAgent, () -> "Received message from " + msg.getSender().getLocalName() + ": " + (msg.getContent().equals("message-delivery-confirm") ? "I want to buy from you!" : "I do not want what you are selling"));
+            if (msg.getContent().equals("message-delivery-confirm")) {
+                _isConfirmed = true;
+                _buyStartNanos = System.nanoTime();
+                OrderTracer.span(_deliveryAgent, "await confirm", cid, _quotedNanos, _buyStartNanos);
+                Util.log(_deliveryAgent, "Buying needed items from markets...");
+                buyItemsFromMarket();
+            } else {
+                // The client already picked someone else; a quote not sent yet is no longer needed.
+                _isRejected = true;
             }
+        } else if (cid.startsWith("market-buy:")) {
+            acceptSale(msg.getSender(), msg.getPerformative() == ACLMessage.INFORM);
+        }
+    }
 
-            if (selectedMarket == null || selectedItems.isEmpty()) {
-                Util.log(_deliveryAgent, "Unable to find the remaining items: " + remainingItems);
-                break;
+    private void retryStockQuery(ACLMessage refusal) {
+        AID market = MarketReplicaAgent.marketOf(refusal);
+        int attempt = _refusals.merge(market, 1, Integer::sum);
+        if (_hasCalculatedCost || _answeredMarkets.contains(market)) {
+            return;
+        }
+        if (!MarketBackoff.mayRetry(attempt)) {
+            Util.log(_deliveryAgent, LogLevel.WARN, () -> "Market " + market.getLocalName() + " refused " + attempt + " times (" + refusal.getContent() + "), quoting without it");
+            abandonMarket(market);
+            return;
+        }
+        long delay = MarketBackoff.delayMillis(attempt, refusal);
+        Util.log(_deliveryAgent, LogLevel.DEBUG, () -> "Market " + market.getLocalName() + " refused (" + refusal.getContent() + "), asking again in " + delay + " ms");
+        RunStats.stockQueryRetried();
+        MarketBackoff.schedule(_deliveryAgent, delay, () -> {
+            if (!_isClosed && !_hasCalculatedCost && !_answeredMarkets.contains(market)) {
+                sendStockQueries(_deliveryAgent, Map.of(market, _queriedItems.get(market)), String.format("stock-query:%s", _orderConvoId));
             }
+        });
+    }
 
-            remainingItems.removeAll(selectedItems);
-            totalCost += selectedMarketCost;
+    /**
+     * Quotes without a market that kept refusing, as if it had none of the items.
+     */
+    void abandonMarket(AID market) {
+        if (!_hasCalculatedCost && !_answeredMarkets.contains(market)) {
+            _abandonedMarkets++;
+            RunStats.stockQueryGivenUp();
+        }
+        acceptStock(market, ItemStock.EMPTY);
+    }
+
+    void acceptStock(AID market, ItemStock stock) {
+        if (_hasCalculatedCost || !_answeredMarkets.add(market)) {
+            Util.log(_deliveryAgent, LogLevel.DEBUG, () -> "Discarding late stock from " + market.getLocalName());
+            return;
+        }
+        _marketStocks.merge(market, stock, ItemStock::merge);
+        Util.log(_deliveryAgent, () -> "<- [" + market.getLocalName() + "] Received stock from market (" + stock.size() + " matching items)");
+        _marketQueryResponses++;
+    }
+
+    private void acceptCover(ACLMessage msg) {
+        if (_hasCalculatedCost) {
+            Util.log(_deliveryAgent, LogLevel.DEBUG, "Discarding late cover from the price oracle");
+            return;
+        }
+        try {
+            _marketStocks.putAll(MessageCodec.readCover(msg));
+        } catch (InvalidMessageContentException e) {
+            Util.log(_deliveryAgent, LogLevel.WARN, () -> "Error parsing cover from the price oracle: " + e.getCause().getMessage());
+        }
+        Util.log(_deliveryAgent, () -> "<- [" + msg.getSender().getLocalName() + "] Received cover from " + _marketStocks.size() + " markets");
+        _marketQueryResponses++;
+    }
+
+    void acceptSale(AID market, boolean sold) {
+        if (_isFinalizing || !_soldMarkets.add(market)) {
+            Util.log(_deliveryAgent, LogLevel.DEBUG, () -> "Discarding late sale from " + market.getLocalName());
+            return;
+        }
+        if (sold) {
+            Util.log(_deliveryAgent, () -> "Received items from market " + market.getLocalName());
+        } else {
+            Util.log(_deliveryAgent, LogLevel.WARN, () -> "Market " + market.getLocalName() + " could not sell the items, dropping its cached catalog");
+            _deliveryAgent.get_catalogCache().invalidate(market);
+        }
+        _marketSellResponses++;
+    }
+
+    Map<AID, Set<String>> queriedItems() {
+        return _queriedItems;
+    }
+
+    Map<AID, List<String>> purchases() {
+        return _marketItems;
+    }
+
+    /**
+     * Hands the selection to the {@link SelectionWorkers}; late stock is discarded from now on, so the workers read
+     * {@code _marketStocks} undisturbed. The quote goes out once the selection is back on the agent thread.
+     */
+    private void CalculateCosts() {
+        _selection = SelectionWorkers.select(_deliveryAgent.get_marketSelector(), _orderItems, _marketStocks);
+        if (_selection.isDone()) {
+            sendQuote();
+            return;
+        }
+        ACLMessage ready = new ACLMessage(ACLMessage.INFORM);
+        ready.setSender(_deliveryAgent.getAID());
+        ready.setConversationId(String.format("quote-ready:%s", _orderConvoId));
+        _selection.whenComplete((selection, error) -> _deliveryAgent.postMessage(ready));
+    }
+
+    private void sendQuote() {
+        MarketSelection selection;
+        try {
+            selection = _selection.join();
+        } catch (CompletionException e) {
+            Util.log(_deliveryAgent, LogLevel.ERROR, () -> "Could not compute the quote for " + _clientAID.getLocalName() + ": " + e.getCause());
+            if (!_isRejected) {
+                refuseOrder("could not compute a quote");
+            }
+            _isClosed = true;
+            return;
+        }
+        _quotedNanos = System.nanoTime();
+        OrderTracer.span(_deliveryAgent, "compute quote", "order-price:" + _orderConvoId, _costStartNanos, _quotedNanos);
+        if (_isRejected) {
+            Util.log(_deliveryAgent, LogLevel.DEBUG, "Client already chose another delivery, dropping the quote");
+            return;
+        }
+
+        for (Map.Entry<AID, List<String>> entry : selection.get_marketItems().entrySet()) {
+            AID selectedMarket = entry.getKey();
             _selectedMarkets.add(selectedMarket);
-            _marketItems.put(selectedMarket, selectedItems);
-            Util.log(_deliveryAgent, "Selected market " + selectedMarket.getLocalName() + " for items " + selectedItems + " with cost " + String.format(Locale.US, "%.2f", selectedMarketCost));
+            _marketItems.put(selectedMarket, entry.getValue());
+            Util.log(_deliveryAgent, () -> "Selected market " + selectedMarket.getLocalName() + " for items " + entry.getValue() + " with cost " + String.format(Locale.US, "%.2f", selection.get_marketCosts().get(selectedMarket)));
+        }
+        if (!selection.get_missingItems().isEmpty()) {
+            Util.log(_deliveryAgent, () -> "Unable to find the remaining items: " + selection.get_missingItems());
         }
 
-        totalCost += _deliveryAgent.get_deliveryFee();
-        Util.log(_deliveryAgent, "Total order cost: " + String.format(Locale.US, "%.2f", totalCost));
+        double totalCost = selection.get_totalCost() + _deliveryAgent.get_deliveryFee();
+        Util.log(_deliveryAgent, () -> "Total order cost: " + String.format(Locale.US, "%.2f", totalCost));
 
         ACLMessage reply = new ACLMessage(ACLMessage.INFORM);
         reply.addReceiver(_clientAID);
         reply.setConversationId(String.format("order-price:%s", _orderConvoId));
-        reply.setContent(String.format(Locale.US, "%.2f", totalCost));
+        MessageCodec.writePrice(reply, totalCost);
 
-        Util.log(_deliveryAgent, "Sending price " + String.format(Locale.US, "%.2f", totalCost));
+        Util.log(_deliveryAgent, () -> "Sending price " + String.format(Locale.US, "%.2f", totalCost));
         _deliveryAgent.send(reply);
+        _deliveryAgent.get_metrics().sent(reply);
+        _deliveryAgent.get_metrics().quoted(_quotedNanos - _queryStartNanos);
     }
 
-    private Map<String, Double> parseStock(String content) {
-        Map<String, Double> stock = new HashMap<>();
-        if (content == null || content.isEmpty()) {
-            return stock;
-        }
+    private void refuseOrder(String reason) {
+        ACLMessage refusal = new ACLMessage(ACLMessage.REFUSE);
+        refusal.addReceiver(_clientAID);
+        refusal.setConversationId(String.format("order-price:%s", _orderConvoId));
+        refusal.setContent(reason);
 
-        String[] items = content.split(",");
-        for (String itemEntry : items) {
-            String[] parts = itemEntry.split(":");
-            if (parts.length == 2) {
-                String item = parts[0].trim();
-                try {
-                    double price = Double.parseDouble(parts[1].trim().replace(",", "."));
-                    stock.put(item, price);
-                } catch (Exception e) {
-                    Util.log(_deliveryAgent, "Error parsing item: " + itemEntry + " <" + parts[1] + ">");
-                }
-            }
-        }
+        _deliveryAgent.send(refusal);
+        _deliveryAgent.get_metrics().sent(refusal);
+    }
 
-        return stock;
+    static ItemStock parseStock(DeliveryAgent deliveryAgent, ACLMessage msg) {
+        if (msg.getPerformative() != ACLMessage.INFORM) {
+            return ItemStock.EMPTY;
+        }
+        try {
+            return MessageCodec.readStock(msg);
+        } catch (InvalidMessageContentException e) {
+            Util.log(deliveryAgent, LogLevel.WARN, () -> "Error parsing stock from " + msg.getSender().getLocalName() + ": " + e.getCause().getMessage());
+            return ItemStock.EMPTY;
+        }
     }
 
     private void buyItemsFromMarket() {
+        if (_deliveryAgent.get_marketBatcher() != null) {
+            _deliveryAgent.get_marketBatcher().buy(this);
+            return;
+        }
         for (var selectedMarket : _selectedMarkets) {
             ACLMessage buyMarketMessage = new ACLMessage(ACLMessage.REQUEST);
             buyMarketMessage.addReceiver(selectedMarket);
             buyMarketMessage.setConversationId(String.format("market-buy:%s", _orderConvoId));
-            buyMarketMessage.setContent(String.format("[%s] Buying needed items from order: %s", _deliveryAgent.getLocalName(), _marketItems.get(selectedMarket).toString()));
+            MessageCodec.writeItems(buyMarketMessage, _marketItems.get(selectedMarket));
 
             _deliveryAgent.send(buyMarketMessage);
+            _deliveryAgent.get_metrics().sent(buyMarketMessage);
         }
     }
 }
@@ -0,0 +1,45 @@
+package org.behaviours.delivery;
+
+import jade.core.Agent;
+import jade.core.behaviours.WakerBehaviour;
+import jade.lang.acl.ACLMessage;
+import org.Settings;
+import org.behaviours.market.AdmissionControl;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How a delivery agent backs off from a market that refused a stock query: exponential from
+ * {@code delivery.retry.base.ms}, never sooner than the market's own retry-after hint, with jitter so that the
+ * refused agents do not all come back at once.
+ */
+class MarketBackoff {
+    private MarketBackoff() {
+    }
+
+    static boolean mayRetry(final int attempt) {
+        return attempt <= Settings.deliveryRetryMax;
+    }
+
+    static long delayMillis(final int attempt, final ACLMessage refusal) {
+        long delay = Settings.deliveryRetryBaseMillis << Math.min(attempt - 1, 16);
+        final String hint = refusal.getUserDefinedParameter(AdmissionControl.RETRY_AFTER);
+        if (hint != null) {
+            try {
+                delay = Math.max(delay, Long.parseLong(hint));
+            } catch (final NumberFormatException ignored) {
+                // Keep our own delay.
+            }
+        }
+        return delay + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    static void schedule(final Agent agent, final long delayMillis, final Runnable retry) {
+        agent.addBehaviour(new WakerBehaviour(agent, delayMillis) {
+            @Override
+            protected void onWake() {
+                retry.run();
+            }
+        });
+    }
+}
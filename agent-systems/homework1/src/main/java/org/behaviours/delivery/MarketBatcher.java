@@ -0,0 +1,239 @@
+package org.behaviours.delivery;
+
+import jade.core.AID;
+import jade.core.behaviours.WakerBehaviour;
+import jade.lang.acl.ACLMessage;
+import org.Settings;
+import org.Util;
+import org.agents.DeliveryAgent;
+import org.agents.MarketReplicaAgent;
+import org.catalog.MarketCatalogCache;
+import org.codec.ItemStock;
+import org.codec.MessageCodec;
+import org.logging.LogLevel;
+import org.metrics.RunStats;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Lets the orders of one delivery agent that arrive within {@code delivery.batch.window.ms}, or until
+ * {@code delivery.batch.size} of them wait, share their market traffic: one stock query per market for the items of
+ * the whole batch and one market-buy per market carrying the items of every order in it. Each answer is parsed once
+ * and handed to every order that asked that market, so an order quotes from the same stock as it would on its own.
+ * Only used from the owning agent's thread.
+ */
+public class MarketBatcher {
+    private final DeliveryAgent _deliveryAgent;
+    private final long _windowMillis;
+    private final int _batchSize;
+    private final List<ClientHandlerBehaviour> _pendingQueries = new ArrayList<>();
+    private final List<ClientHandlerBehaviour> _pendingPurchases = new ArrayList<>();
+    private final Map<String, Map<AID, Share>> _rounds = new HashMap<>();
+    private boolean _flushScheduled = false;
+
+    public MarketBatcher(final DeliveryAgent deliveryAgent, final long windowMillis, final int batchSize) {
+        _deliveryAgent = deliveryAgent;
+        _windowMillis = windowMillis;
+        _batchSize = batchSize;
+    }
+
+    void queryStock(final ClientHandlerBehaviour handler) {
+        _pendingQueries.add(handler);
+        if (_pendingQueries.size() >= _batchSize) {
+            flushQueries();
+        } else {
+            scheduleFlush();
+        }
+    }
+
+    void buy(final ClientHandlerBehaviour handler) {
+        _pendingPurchases.add(handler);
+        if (_pendingPurchases.size() >= _batchSize) {
+            flushPurchases();
+        } else {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Forgets an order that ended, dropping the shares and rounds nobody waits for any more, so a market that never
+     * answers does not keep them.
+     */
+    void orderClosed(final ClientHandlerBehaviour handler) {
+        _pendingQueries.remove(handler);
+        _pendingPurchases.remove(handler);
+        _rounds.values().removeIf(round -> {
+            round.values().removeIf(share -> share._handlers.remove(handler) && share._handlers.isEmpty());
+            return round.isEmpty();
+        });
+    }
+
+    /**
+     * Hands a market's answer to the orders of its batch. Returns false if the conversation is not a batch.
+     */
+    public boolean dispatch(final String type, final String batchId, final ACLMessage msg) {
+        final Map<AID, Share> round = _rounds.get(batchId);
+        if (round == null) {
+            return false;
+        }
+        final AID market = MarketReplicaAgent.marketOf(msg);
+        if (type.equals("stock-query") && msg.getPerformative() == ACLMessage.REFUSE && retry(batchId, round.get(market), msg)) {
+            return true;
+        }
+        final Share share = round.remove(market);
+        if (round.isEmpty()) {
+            _rounds.remove(batchId);
+        }
+        if (share == null) {
+            return true;
+        }
+        if (msg.getPerformative() == ACLMessage.REFUSE) {
+            Util.log(_deliveryAgent, LogLevel.WARN, "Market " + market.getLocalName() + " refused " + share._refusals + " times (" + msg.getContent() + "), quoting without it");
+            for (ClientHandlerBehaviour handler : share._handlers) {
+                handler.abandonMarket(market);
+                handler.restart();
+            }
+            return true;
+        }
+
+        if (type.equals("stock-query")) {
+            final ItemStock stock = ClientHandlerBehaviour.parseStock(_deliveryAgent, msg);
+            _deliveryAgent.get_catalogCache().put(market, share._items, stock,
+                    MarketCatalogCache.parseVersion(msg.getUserDefinedParameter(MarketCatalogCache.CATALOG_VERSION)));
+            for (ClientHandlerBehaviour handler : share._handlers) {
+                handler.acceptStock(market, stock);
+                handler.restart();
+            }
+        } else {
+            for (ClientHandlerBehaviour handler : share._handlers) {
+                handler.acceptSale(market, msg.getPerformative() == ACLMessage.INFORM);
+                handler.restart();
+            }
+        }
+        return true;
+    }
+
+    private boolean retry(final String batchId, final Share share, final ACLMessage refusal) {
+        if (share == null || !MarketBackoff.mayRetry(++share._refusals)) {
+            return false;
+        }
+        final AID market = MarketReplicaAgent.marketOf(refusal);
+        final long delay = MarketBackoff.delayMillis(share._refusals, refusal);
+        Util.log(_deliveryAgent, LogLevel.DEBUG, "Market " + market.getLocalName() + " refused (" + refusal.getContent() + "), asking again in " + delay + " ms");
+        RunStats.stockQueryRetried();
+        MarketBackoff.schedule(_deliveryAgent, delay, () -> {
+            if (_rounds.containsKey(batchId)) {
+                ClientHandlerBehaviour.sendStockQueries(_deliveryAgent, Map.of(market, share._items), "stock-query:" + batchId);
+            }
+        });
+        return true;
+    }
+
+    private void scheduleFlush() {
+        if (_flushScheduled) {
+            return;
+        }
+        _flushScheduled = true;
+        _deliveryAgent.addBehaviour(new WakerBehaviour(_deliveryAgent, _windowMillis) {
+            @Override
+            protected void onWake() {
+                _flushScheduled = false;
+                flushQueries();
+                flushPurchases();
+            }
+        });
+    }
+
+    private void flushQueries() {
+        if (_pendingQueries.isEmpty()) {
+            return;
+        }
+        final String batchId = newBatchId();
+        final Map<AID, Share> round = collect(_pendingQueries, ClientHandlerBehaviour::queriedItems, LinkedHashSet::new);
+        final Map<AID, Collection<String>> marketItems = new LinkedHashMap<>();
+        round.forEach((market, share) -> marketItems.put(market, share._items));
+
+        Util.log(_deliveryAgent, "Sending stock queries of " + _pendingQueries.size() + " orders to " + round.size() + " markets...");
+        openRound(batchId, round, Settings.deliveryQueryDeadlineMillis);
+        _pendingQueries.clear();
+        ClientHandlerBehaviour.sendStockQueries(_deliveryAgent, marketItems, "stock-query:" + batchId);
+    }
+
+    private void flushPurchases() {
+        if (_pendingPurchases.isEmpty()) {
+            return;
+        }
+        final String batchId = newBatchId();
+        final Map<AID, Share> round = collect(_pendingPurchases, ClientHandlerBehaviour::purchases, ArrayList::new);
+
+        Util.log(_deliveryAgent, "Buying items of " + _pendingPurchases.size() + " orders from " + round.size() + " markets...");
+        _pendingPurchases.clear();
+        if (round.isEmpty()) {
+            return;
+        }
+        openRound(batchId, round, Settings.deliveryBuyDeadlineMillis);
+        round.forEach((market, share) -> {
+            final ACLMessage buy = new ACLMessage(ACLMessage.REQUEST);
+            buy.addReceiver(market);
+            buy.setConversationId("market-buy:" + batchId);
+            MessageCodec.writeItems(buy, share._items);
+            _deliveryAgent.send(buy);
+            _deliveryAgent.get_metrics().sent(buy);
+        });
+    }
+
+    private void openRound(final String batchId, final Map<AID, Share> round, final long deadlineMillis) {
+        _rounds.put(batchId, round);
+        if (deadlineMillis <= 0) {
+            return;
+        }
+        // Past the deadline every order of the round goes on without the markets that are still silent.
+        _deliveryAgent.addBehaviour(new WakerBehaviour(_deliveryAgent, deadlineMillis) {
+            @Override
+            protected void onWake() {
+                final Map<AID, Share> left = _rounds.remove(batchId);
+                if (left != null && !left.isEmpty()) {
+                    Util.log(_deliveryAgent, LogLevel.DEBUG, "Dropping batch " + batchId + ", " + left.size() + " markets did not answer in time");
+                }
+            }
+        });
+    }
+
+    private static Map<AID, Share> collect(final List<ClientHandlerBehaviour> handlers,
+                                           final Function<ClientHandlerBehaviour, Map<AID, ? extends Collection<String>>> itemsOf,
+                                           final Supplier<Collection<String>> newItems) {
+        final Map<AID, Share> round = new LinkedHashMap<>();
+        for (ClientHandlerBehaviour handler : handlers) {
+            itemsOf.apply(handler).forEach((market, items) -> {
+                final Share share = round.computeIfAbsent(market, m -> new Share(newItems.get()));
+                share._items.addAll(items);
+                share._handlers.add(handler);
+            });
+        }
+        return round;
+    }
+
+    private String newBatchId() {
+        // Same shape as an order conversation, so the dispatcher splits it the same way.
+        return _deliveryAgent.getLocalName() + "-batch:" + UUID.randomUUID();
+    }
+
+    private static class Share {
+        private final Collection<String> _items;
+        private final List<ClientHandlerBehaviour> _handlers = new ArrayList<>();
+        private int _refusals = 0;
+
+        private Share(final Collection<String> items) {
+            _items = items;
+        }
+    }
+}
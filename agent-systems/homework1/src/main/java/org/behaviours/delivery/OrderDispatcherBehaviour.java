@@ -0,0 +1,99 @@
+package org.behaviours.delivery;
+
+import jade.core.AID;
+import jade.core.behaviours.CyclicBehaviour;
+import jade.lang.acl.ACLMessage;
+import org.Settings;
+import org.Util;
+import org.agents.DeliveryAgent;
+import org.codec.MessageCodec;
+import org.exceptions.InvalidMessageContentException;
+import org.logging.LogLevel;
+import org.metrics.RunStats;
+
+import java.util.List;
+
+/**
+ * The only behaviour of a DeliveryAgent that reads its mailbox. Every conversation ID has the form
+ * {@code <type>:<order id>}; new orders start a {@link ClientHandlerBehaviour}, every other message is handed
+ * to the handler registered for its order id, so each message is looked at exactly once. With
+ * {@code delivery.max.open.orders} set, an order arriving while that many are open is refused right away.
+ */
+public class OrderDispatcherBehaviour extends CyclicBehaviour {
+    private final DeliveryAgent _deliveryAgent;
+
+    public OrderDispatcherBehaviour(DeliveryAgent deliveryAgent) {
+        super(deliveryAgent);
+        _deliveryAgent = deliveryAgent;
+    }
+
+    @Override
+    public void action() {
+        ACLMessage msg = _deliveryAgent.receive();
+        if (msg == null) {
+            block();
+            return;
+        }
+        _deliveryAgent.get_metrics().received(msg);
+
+        String cid = msg.getConversationId();
+        int separator = cid == null ? -1 : cid.indexOf(':');
+        if (separator < 0) {
+            Util.log(_deliveryAgent, LogLevel.WARN, () -> "Dropping message without an order conversation from " + msg.getSender().getLocalName());
+            return;
+        }
+
+        String type = cid.substring(0, separator);
+        String orderConvoId = cid.substring(separator + 1);
+        if (type.equals("order") && Settings.deliveryMaxOpenOrders > 0 && _deliveryAgent.get_orderHandlers().size() >= Settings.deliveryMaxOpenOrders) {
+            ACLMessage refusal = msg.createReply();
+            refusal.setPerformative(ACLMessage.REFUSE);
+            refusal.setConversationId(String.format("order-price:%s", orderConvoId));
+            refusal.setContent("too many open orders");
+            Util.log(_deliveryAgent, LogLevel.DEBUG, () -> "-> [" + msg.getSender().getLocalName() + "] Refused order, "
+                    + Settings.deliveryMaxOpenOrders + " orders are open");
+            RunStats.orderRefused();
+            _deliveryAgent.send(refusal);
+            _deliveryAgent.get_metrics().sent(refusal);
+            return;
+        }
+        if (type.equals("order")) {
+            List<String> orderItems;
+            try {
+                orderItems = MessageCodec.readItems(msg);
+            } catch (InvalidMessageContentException e) {
+                Util.log(_deliveryAgent, LogLevel.WARN, () -> "Error parsing order from " + msg.getSender().getLocalName() + ": " + e.getCause().getMessage());
+                ACLMessage notUnderstood = msg.createReply();
+                notUnderstood.setPerformative(ACLMessage.NOT_UNDERSTOOD);
+                notUnderstood.setConversationId(String.format("order-price:%s", orderConvoId));
+                notUnderstood.setContent("malformed order");
+                _deliveryAgent.send(notUnderstood);
+                _deliveryAgent.get_metrics().sent(notUnderstood);
+                return;
+            }
+            AID clientAID = msg.getSender();
+            Util.log(_deliveryAgent, () -> "-> [" + clientAID.getLocalName() + "] Received order: " + orderItems);
+            ClientHandlerBehaviour handler = new ClientHandlerBehaviour(_deliveryAgent, clientAID, orderItems, orderConvoId);
+            _deliveryAgent.get_orderHandlers().put(orderConvoId, handler);
+            _deliveryAgent.addBehaviour(handler);
+            RunStats.orderOpened();
+            return;
+        }
+
+        ClientHandlerBehaviour handler = _deliveryAgent.get_orderHandlers().get(orderConvoId);
+        if (handler != null) {
+            handler.dispatch(msg);
+        } else if (type.equals("delivery-confirm") && "message-delivery-confirm".equals(msg.getContent())) {
+            // The client picked a quote whose order was given up on meanwhile; it must not wait for the delivery.
+            ACLMessage failure = msg.createReply();
+            failure.setPerformative(ACLMessage.FAILURE);
+            failure.setContent("order expired");
+            Util.log(_deliveryAgent, LogLevel.WARN, () -> "-> [" + msg.getSender().getLocalName() + "] Cannot deliver, the order already expired");
+            _deliveryAgent.send(failure);
+            _deliveryAgent.get_metrics().sent(failure);
+        } else if (_deliveryAgent.get_marketBatcher() == null || !_deliveryAgent.get_marketBatcher().dispatch(type, orderConvoId, msg)) {
+            // Late answers for an order whose handler already ended.
+            Util.log(_deliveryAgent, LogLevel.DEBUG, () -> "Dropping " + type + " message for closed or unknown order " + orderConvoId);
+        }
+    }
+}
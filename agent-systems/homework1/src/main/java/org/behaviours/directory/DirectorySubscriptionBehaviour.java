@@ -0,0 +1,31 @@
+package org.behaviours.directory;
+
+import jade.core.Agent;
+import jade.domain.DFService;
+import jade.domain.FIPAAgentManagement.DFAgentDescription;
+import jade.domain.FIPAException;
+import jade.lang.acl.ACLMessage;
+import jade.proto.SubscriptionInitiator;
+import org.Util;
+import org.directory.DirectorySnapshot;
+import org.logging.LogLevel;
+
+public class DirectorySubscriptionBehaviour extends SubscriptionInitiator {
+    private final DirectorySnapshot _snapshot;
+
+    public DirectorySubscriptionBehaviour(final Agent agent, final DirectorySnapshot snapshot) {
+        super(agent, DFService.createSubscriptionMessage(agent, agent.getDefaultDF(), new DFAgentDescription(), null));
+        _snapshot = snapshot;
+    }
+
+    @Override
+    protected void handleInform(final ACLMessage inform) {
+        try {
+            for (DFAgentDescription description : DFService.decodeNotification(inform.getContent())) {
+                _snapshot.apply(description);
+            }
+        } catch (final FIPAException e) {
+            Util.log(myAgent, LogLevel.WARN, "Could not decode DF notification: " + e.getMessage());
+        }
+    }
+}
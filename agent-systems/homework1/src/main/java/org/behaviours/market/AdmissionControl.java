@@ -0,0 +1,74 @@
+package org.behaviours.market;
+
+import jade.core.AID;
+import jade.core.Agent;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decides whether a market serves a stock query now or refuses it so the asking delivery agent backs off: refused
+ * when the mailbox is deeper than {@code market.mailbox.limit} or the requester ran out of its token bucket
+ * ({@code market.rate.per.second} refilled, {@code market.rate.burst} deep). Both are off at 0.
+ * Used from the market's own thread only.
+ */
+public class AdmissionControl {
+    public static final String RETRY_AFTER = "retry-after-ms";
+
+    private final Agent _agent;
+    private final int _mailboxLimit;
+    private final double _ratePerSecond;
+    private final double _burst;
+    private final Map<AID, TokenBucket> _buckets = new HashMap<>();
+
+    public AdmissionControl(final Agent agent, final int mailboxLimit, final double ratePerSecond, final double burst) {
+        _agent = agent;
+        _mailboxLimit = mailboxLimit;
+        _ratePerSecond = ratePerSecond;
+        _burst = Math.max(1, burst);
+    }
+
+    /**
+     * Null if the query may be served, otherwise why it is refused.
+     */
+    public String refusal(final AID requester) {
+        if (_mailboxLimit > 0 && _agent.getCurQueueSize() > _mailboxLimit) {
+            return "busy: " + _agent.getCurQueueSize() + " messages waiting";
+        }
+        if (_ratePerSecond > 0 && !_buckets.computeIfAbsent(requester, r -> new TokenBucket()).take()) {
+            return "busy: over " + _ratePerSecond + " queries/s";
+        }
+        return null;
+    }
+
+    /**
+     * A hint for how long the requester should wait: roughly until the backlog is worked off or a token is back.
+     */
+    public long retryAfterMillis(final AID requester) {
+        long wait = 0;
+        if (_mailboxLimit > 0) {
+            wait = _agent.getCurQueueSize() / 10;
+        }
+        final TokenBucket bucket = _buckets.get(requester);
+        if (bucket != null && _ratePerSecond > 0) {
+            wait = Math.max(wait, (long) Math.ceil((1 - bucket._tokens) / _ratePerSecond * 1000));
+        }
+        return Math.max(1, wait);
+    }
+
+    private class TokenBucket {
+        private double _tokens = _burst;
+        private long _refilledNanos = System.nanoTime();
+
+        private boolean take() {
+            final long now = System.nanoTime();
+            _tokens = Math.min(_burst, _tokens + (now - _refilledNanos) / 1e9 * _ratePerSecond);
+            _refilledNanos = now;
+            if (_tokens < 1) {
+                return false;
+            }
+            _tokens--;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.behaviours.market;
+
+import jade.core.behaviours.CyclicBehaviour;
+import jade.lang.acl.ACLMessage;
+import org.Util;
+import org.agents.MarketReplicaAgent;
+import org.catalog.CatalogSnapshot;
+import org.codec.MessageCodec;
+import org.exceptions.InvalidMessageContentException;
+import org.logging.LogLevel;
+import org.tracing.OrderTracer;
+
+public class ReplicaStockBehaviour extends CyclicBehaviour {
+    private final MarketReplicaAgent _replicaAgent;
+
+    public ReplicaStockBehaviour(MarketReplicaAgent replicaAgent) {
+        super(replicaAgent);
+        _replicaAgent = replicaAgent;
+    }
+
+    @Override
+    public void action() {
+        ACLMessage msg = myAgent.receive();
+        if (msg == null) {
+            block();
+            return;
+        }
+        final long receivedNanos = System.nanoTime();
+        _replicaAgent.get_metrics().received(msg);
+
+        String convoId = msg.getConversationId();
+        CatalogSnapshot snapshot = CatalogSnapshot.of(_replicaAgent.get_primary());
+        if (convoId == null || !convoId.startsWith("stock-query:") || snapshot == null) {
+            Util.log(_replicaAgent, LogLevel.WARN, "Cannot answer " + convoId + " from " + msg.getSender().getLocalName());
+            return;
+        }
+
+        ACLMessage reply = msg.createReply();
+        reply.addUserDefinedParameter(MarketReplicaAgent.PRIMARY, _replicaAgent.get_primary().getName());
+        MessageCodec.StockWriter stockContent;
+        try {
+            stockContent = SellItemsBehaviour.answerStockQuery(msg, reply, snapshot.get_stock(), snapshot.get_version());
+        } catch (InvalidMessageContentException e) {
+            Util.log(_replicaAgent, LogLevel.WARN, "Error parsing stock query from " + msg.getSender().getLocalName() + ": " + e.getCause().getMessage());
+            ACLMessage notUnderstood = SellItemsBehaviour.notUnderstood(msg);
+            notUnderstood.addUserDefinedParameter(MarketReplicaAgent.PRIMARY, _replicaAgent.get_primary().getName());
+            _replicaAgent.send(notUnderstood);
+            _replicaAgent.get_metrics().sent(notUnderstood);
+            return;
+        }
+        Util.log(_replicaAgent, "-> [" + msg.getSender().getLocalName() + "] Replied with stock of " + _replicaAgent.get_primary().getLocalName() + ": " + stockContent);
+        _replicaAgent.send(reply);
+        _replicaAgent.get_metrics().sent(reply);
+        _replicaAgent.get_metrics().quoted(System.nanoTime() - receivedNanos);
+        OrderTracer.span(_replicaAgent, "stock query", convoId, receivedNanos, System.nanoTime());
+    }
+}
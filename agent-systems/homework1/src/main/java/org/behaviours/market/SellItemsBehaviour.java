@@ -2,48 +2,88 @@ package org.behaviours.market;
 
 import jade.core.behaviours.CyclicBehaviour;
 import jade.lang.acl.ACLMessage;
+import org.Settings;
 import org.Util;
 import org.agents.MarketAgent;
+import org.catalog.MarketCatalogCache;
+import org.codec.ItemStock;
+import org.codec.MessageCodec;
+import org.exceptions.InvalidMessageContentException;
+import org.logging.LogLevel;
+import org.metrics.RunStats;
+import org.tracing.OrderTracer;
 
-import java.util.Locale;
-import java.util.Map;
 
 public class SellItemsBehaviour extends CyclicBehaviour {
     private final MarketAgent _marketAgent;
+    private final AdmissionControl _admission;
 
     public SellItemsBehaviour(MarketAgent marketAgent) {
         super(marketAgent);
         _marketAgent = marketAgent;
+        _admission = new AdmissionControl(marketAgent, Settings.marketMailboxLimit, Settings.marketRatePerSecond, Settings.marketRateBurst);
     }
 
     @Override
     public void action() {
         ACLMessage msg = myAgent.receive();
         if (msg != null) {
+            final long receivedNanos = System.nanoTime();
+            _marketAgent.get_metrics().received(msg);
             String convoId = msg.getConversationId();
-            if (convoId != null && convoId.startsWith("stock-query:")) {
+            String refusal = convoId != null && convoId.startsWith("stock-query:") ? _admission.refusal(msg.getSender()) : null;
+            if (refusal != null) {
+                // Only queries are shed; a purchase comes from an order its client already confirmed.
                 ACLMessage reply = msg.createReply();
-                reply.setPerformative(ACLMessage.INFORM);
-                StringBuilder stockContent = new StringBuilder();
-
-                for (Map.Entry<String, Double> entry : _marketAgent.get_stock().entrySet()) {
-                    if (!stockContent.isEmpty()) {
-                        stockContent.append(",");
-                    }
+                reply.setPerformative(ACLMessage.REFUSE);
+                reply.setContent(refusal);
+                reply.addUserDefinedParameter(AdmissionControl.RETRY_AFTER, String.valueOf(_admission.retryAfterMillis(msg.getSender())));
+                Util.log(_marketAgent, LogLevel.DEBUG, () -> "-> [" + msg.getSender().getLocalName() + "] Refused stock query, " + refusal);
+                RunStats.stockQueryRefused();
+                _marketAgent.send(reply);
+                _marketAgent.get_metrics().sent(reply);
 
-                    stockContent.append(entry.getKey()).append(":").append(String.format(Locale.US, "%.2f", entry.getValue()));
+            } else if (convoId != null && convoId.startsWith("stock-query:")) {
+                ACLMessage reply = msg.createReply();
+                MessageCodec.StockWriter stockContent;
+                try {
+                    stockContent = answerStockQuery(msg, reply, _marketAgent.get_stock(), _marketAgent.get_catalogVersion());
+                } catch (InvalidMessageContentException e) {
+                    Util.log(_marketAgent, LogLevel.WARN, () -> "Error parsing stock query from " + msg.getSender().getLocalName() + ": " + e.getCause().getMessage());
+                    ACLMessage notUnderstood = notUnderstood(msg);
+                    _marketAgent.send(notUnderstood);
+                    _marketAgent.get_metrics().sent(notUnderstood);
+                    return;
+                }
+                if (stockContent.size() == 0) {
+                    Util.log(_marketAgent, () -> "-> [" + msg.getSender().getLocalName() + "] None of the requested items are in stock");
+                } else {
+                    Util.log(_marketAgent, () -> "-> [" + msg.getSender().getLocalName() + "] Replied with stock: " + stockContent);
                 }
-
-                reply.setContent(stockContent.toString());
-                Util.log(_marketAgent, "-> [" + msg.getSender().getLocalName() + "] Replied with stock: " + stockContent);
                 _marketAgent.send(reply);
+                _marketAgent.get_metrics().sent(reply);
+                _marketAgent.get_metrics().quoted(System.nanoTime() - receivedNanos);
+                OrderTracer.span(_marketAgent, "stock query", convoId, receivedNanos, System.nanoTime());
 
             } else if (convoId != null && convoId.startsWith("market-buy:")) {
-                Util.log(_marketAgent, "Received message: " + msg.getContent());
+                int[] items;
+                try {
+                    items = MessageCodec.readItemIds(msg);
+                } catch (InvalidMessageContentException e) {
+                    Util.log(_marketAgent, LogLevel.WARN, () -> "Error parsing purchase from " + msg.getSender().getLocalName() + ": " + e.getCause().getMessage());
+                    ACLMessage notUnderstood = notUnderstood(msg);
+                    _marketAgent.send(notUnderstood);
+                    _marketAgent.get_metrics().sent(notUnderstood);
+                    return;
+                }
+                Util.log(_marketAgent, () -> "[" + msg.getSender().getLocalName() + "] Selling " + items.length + " items");
                 ACLMessage reply = msg.createReply();
                 reply.setPerformative(ACLMessage.INFORM);
                 reply.setContent("Thank you for shopping at " + _marketAgent.getLocalName());
                 _marketAgent.send(reply);
+                _marketAgent.get_metrics().sent(reply);
+                _marketAgent.get_metrics().delivered(System.nanoTime() - receivedNanos);
+                OrderTracer.span(_marketAgent, "sell", convoId, receivedNanos, System.nanoTime());
 
             } else {
                 block();
@@ -52,4 +92,45 @@ public class SellItemsBehaviour extends CyclicBehaviour {
             block();
         }
     }
+
+    /**
+     * Reply to a request whose payload could not be read; a delivery agent treats it like an empty stock or a failed sale.
+     */
+    static ACLMessage notUnderstood(ACLMessage msg) {
+        ACLMessage reply = msg.createReply();
+        reply.setPerformative(ACLMessage.NOT_UNDERSTOOD);
+        reply.setContent("malformed content");
+        return reply;
+    }
+
+    /**
+     * Fills {@code reply} with the prices of the queried items the catalog has (all of them for an empty query):
+     * INFORM with the stock, or NOT_UNDERSTOOD if none is carried.
+     */
+    static MessageCodec.StockWriter answerStockQuery(ACLMessage query, ACLMessage reply, ItemStock stock, long catalogVersion) {
+        MessageCodec.StockWriter stockContent = MessageCodec.stockWriter();
+        int[] requestedItems = MessageCodec.readItemIds(query);
+
+        if (requestedItems.length == 0) {
+            for (int i = 0; i < stock.size(); i++) {
+                stockContent.add(stock.idAt(i), stock.centsAt(i));
+            }
+        } else {
+            for (int item : requestedItems) {
+                int index = stock.indexOf(item);
+                if (index >= 0) {
+                    stockContent.add(item, stock.centsAt(index));
+                }
+            }
+        }
+
+        reply.addUserDefinedParameter(MarketCatalogCache.CATALOG_VERSION, String.valueOf(catalogVersion));
+        if (stockContent.size() == 0) {
+            reply.setPerformative(ACLMessage.NOT_UNDERSTOOD);
+        } else {
+            reply.setPerformative(ACLMessage.INFORM);
+            stockContent.writeTo(reply);
+        }
+        return stockContent;
+    }
 }
@@ -0,0 +1,136 @@
+package org.behaviours.oracle;
+
+import jade.core.AID;
+import jade.core.behaviours.CyclicBehaviour;
+import jade.lang.acl.ACLMessage;
+import org.Settings;
+import org.Util;
+import org.agents.PriceOracleAgent;
+import org.catalog.MarketCatalogCache;
+import org.codec.ItemDictionary;
+import org.codec.ItemStock;
+import org.codec.MessageCodec;
+import org.exceptions.InvalidMessageContentException;
+import org.logging.LogLevel;
+import org.selection.MarketSelection;
+import org.selection.MarketSelector;
+import org.tracing.OrderTracer;
+
+import java.util.*;
+
+/**
+ * The oracle's price table: the last catalog of every market and an item to markets index, so a cover query only
+ * looks at the markets carrying one of its items. Every delivery agent quoting an order asks for the same items,
+ * so covers are kept per item list until the next catalog change and the selection runs once per order.
+ */
+public class PriceOracleBehaviour extends CyclicBehaviour {
+    private static final int COVER_CACHE_SIZE = 1024;
+
+    private final PriceOracleAgent _oracleAgent;
+    private final MarketSelector _selector = MarketSelector.forMode(Settings.marketSelectionMode, Settings.marketSelectionBudgetMillis);
+    private final Map<AID, ItemStock> _catalogs = new HashMap<>();
+    private final Map<AID, Long> _versions = new HashMap<>();
+    private final Map<Integer, Set<AID>> _itemMarkets = new HashMap<>();
+    private final Map<List<String>, MarketSelection> _covers = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<List<String>, MarketSelection> eldest) {
+            return size() > COVER_CACHE_SIZE;
+        }
+    };
+
+    public PriceOracleBehaviour(PriceOracleAgent oracleAgent) {
+        super(oracleAgent);
+        _oracleAgent = oracleAgent;
+    }
+
+    @Override
+    public void action() {
+        ACLMessage msg = myAgent.receive();
+        if (msg == null) {
+            block();
+            return;
+        }
+        _oracleAgent.get_metrics().received(msg);
+
+        String convoId = msg.getConversationId();
+        if (convoId != null && convoId.startsWith("catalog:")) {
+            updateCatalog(msg);
+        } else if (convoId != null && convoId.startsWith("cover-query:")) {
+            answerCover(msg);
+        } else {
+            Util.log(_oracleAgent, LogLevel.WARN, "Cannot answer " + convoId + " from " + msg.getSender().getLocalName());
+        }
+    }
+
+    private void updateCatalog(ACLMessage msg) {
+        AID market = msg.getSender();
+        long version = MarketCatalogCache.parseVersion(msg.getUserDefinedParameter(MarketCatalogCache.CATALOG_VERSION));
+        if (version < _versions.getOrDefault(market, Long.MIN_VALUE)) {
+            return;
+        }
+        ItemStock stock;
+        try {
+            stock = MessageCodec.readStock(msg);
+        } catch (InvalidMessageContentException e) {
+            Util.log(_oracleAgent, LogLevel.WARN, "Error parsing catalog of " + market.getLocalName() + ": " + e.getCause().getMessage());
+            return;
+        }
+
+        ItemStock previous = _catalogs.put(market, stock);
+        if (previous != null) {
+            for (int i = 0; i < previous.size(); i++) {
+                Set<AID> carriers = _itemMarkets.get(previous.idAt(i));
+                carriers.remove(market);
+                if (carriers.isEmpty()) {
+                    _itemMarkets.remove(previous.idAt(i));
+                }
+            }
+        }
+        for (int i = 0; i < stock.size(); i++) {
+            _itemMarkets.computeIfAbsent(stock.idAt(i), id -> new HashSet<>()).add(market);
+        }
+        _versions.put(market, version);
+        _covers.clear();
+        Util.log(_oracleAgent, LogLevel.DEBUG, "<- [" + market.getLocalName() + "] Catalog version " + version + " with " + stock.size() + " items");
+    }
+
+    private void answerCover(ACLMessage msg) {
+        final long receivedNanos = System.nanoTime();
+        List<String> items = MessageCodec.readItems(msg);
+        List<String> key = new ArrayList<>(items);
+        Collections.sort(key);
+        MarketSelection cover = _covers.get(key);
+        if (cover == null) {
+            cover = _selector.select(items, carriers(items));
+            _covers.put(key, cover);
+        }
+
+        Map<AID, ItemStock> stocks = new LinkedHashMap<>();
+        for (Map.Entry<AID, List<String>> entry : cover.get_marketItems().entrySet()) {
+            stocks.put(entry.getKey(), _catalogs.get(entry.getKey()).select(entry.getValue()));
+        }
+
+        ACLMessage reply = msg.createReply();
+        reply.setPerformative(ACLMessage.INFORM);
+        MessageCodec.writeCover(reply, stocks);
+        Util.log(_oracleAgent, "-> [" + msg.getSender().getLocalName() + "] Cover from " + stocks.size() + " markets, "
+                + cover.get_missingItems().size() + " items missing");
+        _oracleAgent.send(reply);
+        _oracleAgent.get_metrics().sent(reply);
+        _oracleAgent.get_metrics().quoted(System.nanoTime() - receivedNanos);
+        OrderTracer.span(_oracleAgent, "cover query", msg.getConversationId(), receivedNanos, System.nanoTime());
+    }
+
+    /**
+     * The catalogs of the markets carrying at least one of the items.
+     */
+    private Map<AID, ItemStock> carriers(List<String> items) {
+        Map<AID, ItemStock> carriers = new HashMap<>();
+        for (String item : items) {
+            for (AID market : _itemMarkets.getOrDefault(ItemDictionary.idOf(item), Set.of())) {
+                carriers.putIfAbsent(market, _catalogs.get(market));
+            }
+        }
+        return carriers;
+    }
+}
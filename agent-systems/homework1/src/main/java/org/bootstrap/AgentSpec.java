@@ -0,0 +1,20 @@
+package org.bootstrap;
+
+import lombok.Getter;
+
+/**
+ * One agent to be started: its name, class in {@code org.agents} and arguments. The class name doubles as the role
+ * {@link PartitionMode#ROLE} partitions by.
+ */
+@Getter
+public class AgentSpec {
+    private final String _name;
+    private final String _className;
+    private final Object[] _args;
+
+    public AgentSpec(final String name, final String className, final Object[] args) {
+        _name = name;
+        _className = className;
+        _args = args;
+    }
+}
@@ -0,0 +1,141 @@
+package org.bootstrap;
+
+import jade.core.Profile;
+import jade.core.ProfileImpl;
+import jade.core.Runtime;
+import jade.wrapper.ContainerController;
+import org.Settings;
+import org.agents.DirectoryAgent;
+import org.exceptions.JadePlatformInitializationException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.JADEEngine.runAgent;
+
+/**
+ * Starts the agents of a large scenario. With {@code bootstrap.containers=0} every agent goes into the main container
+ * one after another; otherwise that many peripheral containers are created in parallel, the agents are partitioned
+ * across them ({@code bootstrap.partition}) and every container starts its share on its own thread.
+ */
+public class ContainerBootstrap {
+    private final ContainerController _mainContainer;
+    private final int _containerCount;
+    private final PartitionMode _partitionMode;
+
+    public ContainerBootstrap(final ContainerController mainContainer) {
+        this(mainContainer, Settings.bootstrapContainers, Settings.bootstrapPartition);
+    }
+
+    public ContainerBootstrap(final ContainerController mainContainer, final int containerCount, final PartitionMode partitionMode) {
+        _mainContainer = mainContainer;
+        _containerCount = containerCount;
+        _partitionMode = partitionMode;
+    }
+
+    public void launch(final List<AgentSpec> agents) {
+        final long start = System.nanoTime();
+        if (_containerCount <= 0) {
+            for (AgentSpec agent : agents) {
+                runAgent(_mainContainer, agent.get_name(), agent.get_className(), agent.get_args());
+            }
+            System.out.printf(Locale.US, "Bootstrap: %d agents in the main container in %.0f ms%n", agents.size(), millisSince(start));
+            return;
+        }
+
+        final List<List<AgentSpec>> partitions = partition(agents);
+        final ExecutorService executor = Executors.newFixedThreadPool(_containerCount);
+        try {
+            final List<Future<ContainerReport>> reports = new ArrayList<>();
+            for (int i = 0; i < _containerCount; i++) {
+                final String containerName = "Agents-" + (i + 1);
+                final List<AgentSpec> partition = partitions.get(i);
+                reports.add(executor.submit(() -> startContainer(containerName, partition)));
+            }
+
+            System.out.printf(Locale.US, "Bootstrap: %d agents in %d containers (%s)%n", agents.size(), _containerCount, _partitionMode);
+            for (Future<ContainerReport> report : reports) {
+                System.out.println(report.get());
+            }
+            System.out.printf(Locale.US, "Bootstrap done in %.0f ms%n", millisSince(start));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JadePlatformInitializationException(e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new JadePlatformInitializationException(e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    List<List<AgentSpec>> partition(final List<AgentSpec> agents) {
+        final List<List<AgentSpec>> partitions = new ArrayList<>();
+        for (int i = 0; i < _containerCount; i++) {
+            partitions.add(new ArrayList<>());
+        }
+
+        if (_partitionMode == PartitionMode.HASH) {
+            for (AgentSpec agent : agents) {
+                partitions.get(Math.floorMod(agent.get_name().hashCode(), _containerCount)).add(agent);
+            }
+            return partitions;
+        }
+
+        // Each role gets its own containers (every role-th one), spread round-robin inside the role.
+        // With fewer containers than roles, roles share them.
+        final Map<String, List<AgentSpec>> byRole = new LinkedHashMap<>();
+        for (AgentSpec agent : agents) {
+            byRole.computeIfAbsent(agent.get_className(), role -> new ArrayList<>()).add(agent);
+        }
+        final int roleCount = byRole.size();
+        int roleIndex = 0;
+        for (List<AgentSpec> roleAgents : byRole.values()) {
+            final List<Integer> containers = new ArrayList<>();
+            for (int i = roleIndex % _containerCount; i < _containerCount; i += roleCount) {
+                containers.add(i);
+            }
+            for (int i = 0; i < roleAgents.size(); i++) {
+                partitions.get(containers.get(i % containers.size())).add(roleAgents.get(i));
+            }
+            roleIndex++;
+        }
+        return partitions;
+    }
+
+    private ContainerReport startContainer(final String containerName, final List<AgentSpec> agents) {
+        final long start = System.nanoTime();
+        final Profile profile = new ProfileImpl(false);
+        profile.setParameter(Profile.CONTAINER_NAME, containerName);
+        profile.setParameter(Profile.MTPS, "");
+        final ContainerController container = Runtime.instance().createAgentContainer(profile);
+        if (container == null) {
+            throw new JadePlatformInitializationException(new IllegalStateException("Container " + containerName + " did not join the platform"));
+        }
+        final double createdMillis = millisSince(start);
+        runAgent(container, DirectoryAgent.NAME_PREFIX + containerName, "DirectoryAgent", new Object[0]);
+
+        final long agentsStart = System.nanoTime();
+        for (AgentSpec agent : agents) {
+            runAgent(container, agent.get_name(), agent.get_className(), agent.get_args());
+        }
+        return new ContainerReport(containerName, agents.size(), createdMillis, millisSince(agentsStart));
+    }
+
+    private static double millisSince(final long startNanos) {
+        return (System.nanoTime() - startNanos) / 1e6;
+    }
+
+    private record ContainerReport(String name, int agents, double createdMillis, double agentsMillis) {
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "  %s: created in %.0f ms, %d agents started in %.0f ms", name, createdMillis, agents, agentsMillis);
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package org.bootstrap;
+
+public enum PartitionMode {
+    ROLE,
+    HASH
+}
@@ -0,0 +1,36 @@
+package org.catalog;
+
+import jade.core.AID;
+import lombok.Getter;
+import org.codec.ItemStock;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An immutable, versioned copy of a market's catalog. The market publishes a new one whenever its stock changes and
+ * its replicas answer stock queries from whatever was published last, without touching the market's thread.
+ */
+@Getter
+public final class CatalogSnapshot {
+    private static final Map<AID, CatalogSnapshot> _published = new ConcurrentHashMap<>();
+
+    private final long _version;
+    private final ItemStock _stock;
+
+    private CatalogSnapshot(final long version, final ItemStock stock) {
+        _version = version;
+        _stock = stock;
+    }
+
+    public static void publish(final AID market, final long version, final ItemStock stock) {
+        _published.put(market, new CatalogSnapshot(version, stock));
+    }
+
+    /**
+     * The last snapshot of the market, null if it never published one.
+     */
+    public static CatalogSnapshot of(final AID market) {
+        return _published.get(market);
+    }
+}
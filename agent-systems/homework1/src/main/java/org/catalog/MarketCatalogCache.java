@@ -0,0 +1,129 @@
+package org.catalog;
+
+import jade.core.AID;
+import lombok.Getter;
+
+import org.codec.ItemDictionary;
+import org.codec.ItemStock;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * What a delivery agent has already learned about each market's stock, kept for {@code ttlMillis} after the first
+ * answer arrived; a ttl of 0 or less turns the cache off. Stock queries are item-scoped, so an entry remembers both the
+ * prices it was told and the items the market reported as missing. Entries remember the catalog version reported by
+ * the market, so an older reply can never overwrite a newer one. Only used from the owning agent's thread.
+ */
+public class MarketCatalogCache {
+    public static final String CATALOG_VERSION = "catalog-version";
+
+    private final long _ttlMillis;
+    private final Map<AID, Entry> _entries = new HashMap<>();
+    @Getter
+    private long _hits = 0;
+    @Getter
+    private long _misses = 0;
+
+    public MarketCatalogCache(final long ttlMillis) {
+        _ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Returns the known prices of the requested items the market carries and adds every item the cache knows nothing
+     * fresh about to {@code unresolved}. The lookup counts as a hit only if nothing was left unresolved.
+     */
+    public ItemStock lookup(final AID market, final Collection<String> items, final Collection<String> unresolved) {
+        final Entry entry = freshEntry(market);
+        if (entry == null) {
+            unresolved.addAll(items);
+            _misses++;
+            return ItemStock.EMPTY;
+        }
+
+        final ItemStock.Builder known = ItemStock.builder(items.size());
+        for (String item : items) {
+            final int id = ItemDictionary.idOf(item);
+            final int index = entry._prices.indexOf(id);
+            if (index >= 0) {
+                known.add(id, entry._prices.centsAt(index));
+            } else if (id < 0 || !entry._absent.get(id)) {
+                unresolved.add(item);
+            }
+        }
+
+        if (unresolved.isEmpty()) {
+            _hits++;
+        } else {
+            _misses++;
+        }
+        return known.build();
+    }
+
+    /**
+     * Stores a market's answer to a query for {@code requestedItems}; requested items missing from {@code stock}
+     * are remembered as not carried by the market.
+     */
+    public void put(final AID market, final Collection<String> requestedItems, final ItemStock stock, final long marketVersion) {
+        if (_ttlMillis <= 0) {
+            return;
+        }
+        Entry entry = _entries.get(market);
+        if (entry != null && marketVersion < entry._marketVersion) {
+            return;
+        }
+        if (entry == null || entry._marketVersion != marketVersion || isStale(entry)) {
+            entry = new Entry(marketVersion, System.currentTimeMillis());
+            _entries.put(market, entry);
+        }
+
+        entry._prices = entry._prices.merge(stock);
+        for (String item : requestedItems) {
+            if (!stock.contains(item)) {
+                entry._absent.set(ItemDictionary.intern(item));
+            }
+        }
+    }
+
+    public void invalidate(final AID market) {
+        _entries.remove(market);
+    }
+
+    public void invalidateAll() {
+        _entries.clear();
+    }
+
+    public static long parseVersion(final String version) {
+        if (version == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(version);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private Entry freshEntry(final AID market) {
+        final Entry entry = _entries.get(market);
+        return entry == null || isStale(entry) ? null : entry;
+    }
+
+    private boolean isStale(final Entry entry) {
+        return _ttlMillis <= 0 || System.currentTimeMillis() - entry._fetchedAt > _ttlMillis;
+    }
+
+    private static class Entry {
+        private ItemStock _prices = ItemStock.EMPTY;
+        private final BitSet _absent = new BitSet();
+        private final long _marketVersion;
+        private final long _fetchedAt;
+
+        private Entry(final long marketVersion, final long fetchedAt) {
+            _marketVersion = marketVersion;
+            _fetchedAt = fetchedAt;
+        }
+    }
+}
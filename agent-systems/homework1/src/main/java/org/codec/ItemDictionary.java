@@ -0,0 +1,60 @@
+package org.codec;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JVM-wide mapping between item names and small integer ids. Lookups of known items are lock-free,
+ * only the first sighting of a name takes the lock. Ids are only meaningful inside one JVM, which is where every
+ * scenario in {@link org.Engine} runs; {@link #ID} tells this JVM's dictionary apart from any other.
+ */
+public class ItemDictionary {
+    public static final String ID = Long.toHexString(new SecureRandom().nextLong());
+
+    private static final ConcurrentHashMap<String, Integer> _ids = new ConcurrentHashMap<>();
+    private static volatile String[] _names = new String[64];
+    private static int _size = 0;
+
+    public static int intern(final String item) {
+        final Integer id = _ids.get(item);
+        return id != null ? id : register(item);
+    }
+
+    /**
+     * Id of an already known item, -1 for a name never seen.
+     */
+    public static int idOf(final String item) {
+        final Integer id = _ids.get(item);
+        return id != null ? id : -1;
+    }
+
+    public static String name(final int id) {
+        final String[] names = _names;
+        if (id < 0 || id >= names.length || names[id] == null) {
+            throw new IllegalArgumentException("Unknown item id: " + id);
+        }
+        return names[id];
+    }
+
+    public static int size() {
+        return _ids.size();
+    }
+
+    private static synchronized int register(final String item) {
+        final Integer existing = _ids.get(item);
+        if (existing != null) {
+            return existing;
+        }
+
+        final int id = _size++;
+        String[] names = _names;
+        if (id >= names.length) {
+            names = Arrays.copyOf(names, names.length * 2);
+        }
+        names[id] = item;
+        _names = names;
+        _ids.put(item, id);
+        return id;
+    }
+}
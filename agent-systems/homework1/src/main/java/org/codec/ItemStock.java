@@ -0,0 +1,198 @@
+package org.codec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A market's prices as two parallel primitive arrays: {@link ItemDictionary} ids in ascending order and prices in
+ * cents. An entry costs 12 bytes instead of a boxed map entry with a String key and a Double value. Immutable;
+ * {@link #merge} and {@link #select} return new instances.
+ */
+public final class ItemStock {
+    public static final ItemStock EMPTY = new ItemStock(new int[0], new long[0]);
+
+    private final int[] _ids;
+    private final long[] _cents;
+
+    private ItemStock(final int[] ids, final long[] cents) {
+        _ids = ids;
+        _cents = cents;
+    }
+
+    public static ItemStock of(final Map<String, Double> prices) {
+        final Builder builder = builder(prices.size());
+        prices.forEach((item, price) -> builder.add(ItemDictionary.intern(item), MessageCodec.toCents(price)));
+        return builder.build();
+    }
+
+    public static Builder builder(final int expectedSize) {
+        return new Builder(expectedSize);
+    }
+
+    public int size() {
+        return _ids.length;
+    }
+
+    public boolean isEmpty() {
+        return _ids.length == 0;
+    }
+
+    public int idAt(final int index) {
+        return _ids[index];
+    }
+
+    public long centsAt(final int index) {
+        return _cents[index];
+    }
+
+    public double priceAt(final int index) {
+        return _cents[index] / 100.0;
+    }
+
+    /**
+     * Position of the item id, negative if the market does not carry it.
+     */
+    public int indexOf(final int id) {
+        return id < 0 ? -1 : Arrays.binarySearch(_ids, id);
+    }
+
+    public boolean contains(final String item) {
+        return indexOf(ItemDictionary.idOf(item)) >= 0;
+    }
+
+    /**
+     * Price of the item, NaN if the market does not carry it.
+     */
+    public double price(final String item) {
+        final int index = indexOf(ItemDictionary.idOf(item));
+        return index < 0 ? Double.NaN : priceAt(index);
+    }
+
+    public List<String> items() {
+        final List<String> items = new ArrayList<>(_ids.length);
+        for (int id : _ids) {
+            items.add(ItemDictionary.name(id));
+        }
+        return items;
+    }
+
+    /**
+     * The entries of the listed items this stock has.
+     */
+    public ItemStock select(final Iterable<String> items) {
+        final Builder builder = builder(8);
+        for (String item : items) {
+            final int index = indexOf(ItemDictionary.idOf(item));
+            if (index >= 0) {
+                builder.add(_ids[index], _cents[index]);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * This stock with the entries of {@code newer} added, its prices winning where both have an item.
+     */
+    public ItemStock merge(final ItemStock newer) {
+        if (isEmpty()) {
+            return newer;
+        }
+        if (newer.isEmpty()) {
+            return this;
+        }
+        final int[] ids = new int[_ids.length + newer._ids.length];
+        final long[] cents = new long[ids.length];
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < _ids.length || j < newer._ids.length) {
+            if (j == newer._ids.length || (i < _ids.length && _ids[i] < newer._ids[j])) {
+                ids[count] = _ids[i];
+                cents[count++] = _cents[i++];
+            } else {
+                if (i < _ids.length && _ids[i] == newer._ids[j]) {
+                    i++;
+                }
+                ids[count] = newer._ids[j];
+                cents[count++] = newer._cents[j++];
+            }
+        }
+        return new ItemStock(Arrays.copyOf(ids, count), Arrays.copyOf(cents, count));
+    }
+
+    public Map<String, Double> toMap() {
+        final Map<String, Double> prices = new LinkedHashMap<>();
+        for (int i = 0; i < _ids.length; i++) {
+            prices.put(ItemDictionary.name(_ids[i]), priceAt(i));
+        }
+        return prices;
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+
+    public static class Builder {
+        private int[] _ids;
+        private long[] _cents;
+        private int _size = 0;
+
+        private Builder(final int expectedSize) {
+            _ids = new int[Math.max(1, expectedSize)];
+            _cents = new long[_ids.length];
+        }
+
+        public Builder add(final int id, final long cents) {
+            if (_size == _ids.length) {
+                _ids = Arrays.copyOf(_ids, _size * 2);
+                _cents = Arrays.copyOf(_cents, _size * 2);
+            }
+            _ids[_size] = id;
+            _cents[_size] = cents;
+            _size++;
+            return this;
+        }
+
+        /**
+         * Sorts the entries by id; when an id was added twice the later price is kept.
+         */
+        public ItemStock build() {
+            if (_size == 0) {
+                return EMPTY;
+            }
+            boolean sorted = true;
+            for (int i = 1; i < _size && sorted; i++) {
+                sorted = _ids[i - 1] < _ids[i];
+            }
+            if (sorted) {
+                return new ItemStock(Arrays.copyOf(_ids, _size), Arrays.copyOf(_cents, _size));
+            }
+
+            // Sort (id, position) pairs packed into longs, so the later of two equal ids comes last.
+            final long[] order = new long[_size];
+            for (int i = 0; i < _size; i++) {
+                order[i] = ((long) _ids[i] << 32) | i;
+            }
+            Arrays.sort(order);
+            final int[] ids = new int[_size];
+            final long[] cents = new long[_size];
+            int count = 0;
+            for (long packed : order) {
+                final int id = (int) (packed >>> 32);
+                final int position = (int) packed;
+                if (count > 0 && ids[count - 1] == id) {
+                    cents[count - 1] = _cents[position];
+                } else {
+                    ids[count] = id;
+                    cents[count] = _cents[position];
+                    count++;
+                }
+            }
+            return new ItemStock(Arrays.copyOf(ids, count), Arrays.copyOf(cents, count));
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package org.codec;
+
+import jade.core.AID;
+import jade.lang.acl.ACLMessage;
+import org.Settings;
+import org.exceptions.InvalidMessageContentException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Payload format of order, stock and quote messages.
+ * <p>
+ * The binary format writes items as {@link ItemDictionary} ids and prices as cents, both as unsigned varints, into the
+ * byte content of the message and marks it with the {@link #BINARY_LANGUAGE} language. The comma separated text
+ * format is kept as a debug fallback ({@code codec.text=true}); readers pick the format from the message language,
+ * so both can be mixed on one platform. Item ids are only valid inside the JVM that assigned them, so binary
+ * payloads are tagged with the {@link ItemDictionary#ID} of the writer and refused by any other JVM; agents spread
+ * over several JVMs have to use the text format.
+ */
+public class MessageCodec {
+    public static final String BINARY_LANGUAGE = "homework1-binary";
+    public static final String DICTIONARY = "item-dictionary";
+
+    private static final ThreadLocal<Buffer> _buffers = ThreadLocal.withInitial(Buffer::new);
+
+    public static void writeItems(final ACLMessage msg, final Collection<String> items) {
+        if (Settings.textCodec) {
+            msg.setContent(String.join(",", items));
+            return;
+        }
+
+        final Buffer buffer = _buffers.get().reset();
+        buffer.writeVarint(items.size());
+        for (String item : items) {
+            buffer.writeVarint(ItemDictionary.intern(item));
+        }
+        buffer.writeTo(msg);
+    }
+
+    public static List<String> readItems(final ACLMessage msg) {
+        if (!isBinary(msg)) {
+            final String content = msg.getContent();
+            return content == null || content.isEmpty() ? List.of() : List.of(content.split(","));
+        }
+
+        final Reader reader = reader(msg);
+        final int count = reader.readVarint();
+        final List<String> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            items.add(ItemDictionary.name(reader.readItemId()));
+        }
+        return items;
+    }
+
+    /**
+     * The requested items as dictionary ids, for readers that never need the names.
+     */
+    public static int[] readItemIds(final ACLMessage msg) {
+        if (!isBinary(msg)) {
+            final List<String> items = readItems(msg);
+            final int[] ids = new int[items.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = ItemDictionary.intern(items.get(i));
+            }
+            return ids;
+        }
+
+        final Reader reader = reader(msg);
+        final int[] ids = new int[reader.readVarint()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = reader.readItemId();
+        }
+        return ids;
+    }
+
+    public static StockWriter stockWriter() {
+        return new StockWriter(Settings.textCodec ? null : _buffers.get().reset());
+    }
+
+    public static ItemStock readStock(final ACLMessage msg) {
+        if (!isBinary(msg)) {
+            return readTextStock(msg.getContent());
+        }
+
+        final byte[] content = msg.getByteSequenceContent();
+        if (content == null || content.length == 0) {
+            return ItemStock.EMPTY;
+        }
+        final Reader reader = reader(msg);
+        final int count = reader.readVarint();
+        final ItemStock.Builder stock = ItemStock.builder(count);
+        for (int i = 0; i < count; i++) {
+            stock.add(reader.readItemId(), reader.readVarlong());
+        }
+        return stock.build();
+    }
+
+    /**
+     * The stock of each market of a cover, e.g. a price oracle's answer; the reader gets the markets back in order.
+     * Market names are written length-prefixed, as a GUID may contain any character.
+     */
+    public static void writeCover(final ACLMessage msg, final Map<AID, ItemStock> cover) {
+        if (Settings.textCodec) {
+            final StringBuilder content = new StringBuilder();
+            for (Map.Entry<AID, ItemStock> entry : cover.entrySet()) {
+                if (!content.isEmpty()) {
+                    content.append(";");
+                }
+                final String market = entry.getKey().getName();
+                content.append(market.length()).append(":").append(market);
+                final ItemStock stock = entry.getValue();
+                for (int i = 0; i < stock.size(); i++) {
+                    content.append(i == 0 ? "" : ",").append(ItemDictionary.name(stock.idAt(i)))
+                            .append(":").append(String.format(Locale.US, "%.2f", stock.priceAt(i)));
+                }
+            }
+            msg.setContent(content.toString());
+            return;
+        }
+
+        final Buffer buffer = _buffers.get().reset();
+        buffer.writeVarint(cover.size());
+        for (Map.Entry<AID, ItemStock> entry : cover.entrySet()) {
+            buffer.writeString(entry.getKey().getName());
+            final ItemStock stock = entry.getValue();
+            buffer.writeVarint(stock.size());
+            for (int i = 0; i < stock.size(); i++) {
+                buffer.writeVarint(stock.idAt(i));
+                buffer.writeVarint(stock.centsAt(i));
+            }
+        }
+        buffer.writeTo(msg);
+    }
+
+    public static Map<AID, ItemStock> readCover(final ACLMessage msg) {
+        final Map<AID, ItemStock> cover = new LinkedHashMap<>();
+        if (!isBinary(msg)) {
+            final String content = msg.getContent();
+            int position = 0;
+            try {
+                while (content != null && position < content.length()) {
+                    final int separator = content.indexOf(':', position);
+                    final int nameEnd = separator + 1 + Integer.parseInt(content.substring(position, separator));
+                    final int stockEnd = content.indexOf(';', nameEnd) < 0 ? content.length() : content.indexOf(';', nameEnd);
+                    cover.put(new AID(content.substring(separator + 1, nameEnd), AID.ISGUID), readTextStock(content.substring(nameEnd, stockEnd)));
+                    position = stockEnd + 1;
+                }
+            } catch (IndexOutOfBoundsException | NumberFormatException e) {
+                throw new InvalidMessageContentException(e);
+            }
+            return cover;
+        }
+
+        final Reader reader = reader(msg);
+        final int count = reader.readVarint();
+        for (int s = 0; s < count; s++) {
+            final AID market = new AID(reader.readString(), AID.ISGUID);
+            final int entries = reader.readVarint();
+            final ItemStock.Builder stock = ItemStock.builder(entries);
+            for (int i = 0; i < entries; i++) {
+                stock.add(reader.readItemId(), reader.readVarlong());
+            }
+            cover.put(market, stock.build());
+        }
+        return cover;
+    }
+
+    public static void writePrice(final ACLMessage msg, final double price) {
+        if (Settings.textCodec) {
+            msg.setContent(String.format(Locale.US, "%.2f", price));
+            return;
+        }
+
+        final Buffer buffer = _buffers.get().reset();
+        buffer.writeVarint(toCents(price));
+        buffer.writeTo(msg);
+    }
+
+    public static double readPrice(final ACLMessage msg) {
+        if (!isBinary(msg)) {
+            try {
+                return Double.parseDouble(msg.getContent());
+            } catch (NullPointerException | NumberFormatException e) {
+                throw new InvalidMessageContentException(e);
+            }
+        }
+        return reader(msg).readVarlong() / 100.0;
+    }
+
+    public static boolean isBinary(final ACLMessage msg) {
+        return BINARY_LANGUAGE.equals(msg.getLanguage());
+    }
+
+    /**
+     * Binary payloads carry item ids, which only the dictionary that wrote them can resolve; one written in another
+     * JVM is rejected rather than read with the wrong names.
+     */
+    private static Reader reader(final ACLMessage msg) {
+        final String dictionary = msg.getUserDefinedParameter(DICTIONARY);
+        if (!ItemDictionary.ID.equals(dictionary)) {
+            throw new InvalidMessageContentException(new IllegalStateException(
+                    "Binary payload written with item dictionary " + dictionary + ", this JVM has " + ItemDictionary.ID + "; use codec.text=true across JVMs"));
+        }
+        return new Reader(msg.getByteSequenceContent());
+    }
+
+    static long toCents(final double price) {
+        return Math.round(price * 100);
+    }
+
+    private static ItemStock readTextStock(final String content) {
+        if (content == null || content.isEmpty()) {
+            return ItemStock.EMPTY;
+        }
+
+        final String[] entries = content.split(",");
+        final ItemStock.Builder stock = ItemStock.builder(entries.length);
+        for (String itemEntry : entries) {
+            int separator = itemEntry.lastIndexOf(':');
+            if (separator > 0) {
+                try {
+                    stock.add(ItemDictionary.intern(itemEntry.substring(0, separator).trim()),
+                            toCents(Double.parseDouble(itemEntry.substring(separator + 1).trim())));
+                } catch (NumberFormatException e) {
+                    throw new InvalidMessageContentException(e);
+                }
+            }
+        }
+        return stock.build();
+    }
+
+    /**
+     * Builds one stock payload entry by entry. In binary mode the entries go into the thread's scratch buffer,
+     * so a reply costs a single byte array no matter how many entries it has.
+     */
+    public static class StockWriter {
+        private final Buffer _buffer;
+        private final StringBuilder _text;
+        private int _count = 0;
+
+        private StockWriter(final Buffer buffer) {
+            _buffer = buffer;
+            _text = buffer == null ? new StringBuilder() : null;
+            if (_buffer != null) {
+                // Entry count goes first; reserve the widest varint an int can take and patch it on write.
+                _buffer.skip(5);
+            }
+        }
+
+        public void add(final String item, final double price) {
+            add(ItemDictionary.intern(item), toCents(price));
+        }
+
+        public void add(final int itemId, final long cents) {
+            if (_buffer != null) {
+                _buffer.writeVarint(itemId);
+                _buffer.writeVarint(cents);
+            } else {
+                if (!_text.isEmpty()) {
+                    _text.append(",");
+                }
+                _text.append(ItemDictionary.name(itemId)).append(":").append(String.format(Locale.US, "%.2f", cents / 100.0));
+            }
+            _count++;
+        }
+
+        public int size() {
+            return _count;
+        }
+
+        public void writeTo(final ACLMessage msg) {
+            if (_buffer != null) {
+                _buffer.patchPaddedVarint(0, _count);
+                _buffer.writeTo(msg);
+            } else {
+                msg.setContent(_text.toString());
+            }
+        }
+
+        @Override
+        public String toString() {
+            return _buffer != null ? _count + " entries" : _text.toString();
+        }
+    }
+
+    private static class Buffer {
+        private byte[] _bytes = new byte[256];
+        private int _position = 0;
+
+        Buffer reset() {
+            _position = 0;
+            return this;
+        }
+
+        void skip(final int count) {
+            ensureCapacity(count);
+            _position += count;
+        }
+
+        void writeVarint(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                _bytes[_position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            _bytes[_position++] = (byte) value;
+        }
+
+        void writeString(final String value) {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, _bytes, _position, bytes.length);
+            _position += bytes.length;
+        }
+
+        void patchPaddedVarint(final int offset, final int value) {
+            for (int i = 0; i < 4; i++) {
+                _bytes[offset + i] = (byte) (((value >>> (7 * i)) & 0x7F) | 0x80);
+            }
+            _bytes[offset + 4] = (byte) ((value >>> 28) & 0x7F);
+        }
+
+        void writeTo(final ACLMessage msg) {
+            final byte[] content = new byte[_position];
+            System.arraycopy(_bytes, 0, content, 0, _position);
+            msg.setByteSequenceContent(content);
+            msg.setLanguage(BINARY_LANGUAGE);
+            msg.addUserDefinedParameter(DICTIONARY, ItemDictionary.ID);
+        }
+
+        private void ensureCapacity(final int extra) {
+            if (_position + extra > _bytes.length) {
+                byte[] grown = new byte[Math.max(_bytes.length * 2, _position + extra)];
+                System.arraycopy(_bytes, 0, grown, 0, _position);
+                _bytes = grown;
+            }
+        }
+    }
+
+    private static class Reader {
+        private final byte[] _bytes;
+        private int _position = 0;
+
+        Reader(final byte[] bytes) {
+            // A message without byte content reads as an empty, hence truncated, payload.
+            _bytes = bytes == null ? new byte[0] : bytes;
+        }
+
+        /**
+         * An id the dictionary of this JVM knows, so the caller can look its name up.
+         */
+        int readItemId() {
+            final int id = readVarint();
+            try {
+                ItemDictionary.name(id);
+            } catch (IllegalArgumentException e) {
+                throw new InvalidMessageContentException(e);
+            }
+            return id;
+        }
+
+        /**
+         * Counts and ids; a value that does not fit an int is rejected rather than truncated.
+         */
+        int readVarint() {
+            try {
+                return Math.toIntExact(readVarlong());
+            } catch (ArithmeticException e) {
+                throw new InvalidMessageContentException(e);
+            }
+        }
+
+        String readString() {
+            final int length = readVarint();
+            if (length < 0 || length > _bytes.length - _position) {
+                throw new InvalidMessageContentException(new ArrayIndexOutOfBoundsException(_position + length));
+            }
+            final String value = new String(_bytes, _position, length, StandardCharsets.UTF_8);
+            _position += length;
+            return value;
+        }
+
+        long readVarlong() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            try {
+                do {
+                    b = _bytes[_position++];
+                    value |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0 && shift < 64);
+            } catch (ArrayIndexOutOfBoundsException e) {
+                throw new InvalidMessageContentException(e);
+            }
+            if ((b & 0x80) != 0) {
+                throw new InvalidMessageContentException(new ArithmeticException("varint longer than 64 bits"));
+            }
+            return value;
+        }
+    }
+}
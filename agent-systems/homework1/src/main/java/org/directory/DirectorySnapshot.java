@@ -0,0 +1,244 @@
+package org.directory;
+
+import jade.core.AID;
+import jade.core.Agent;
+import jade.domain.DFService;
+import jade.domain.FIPAAgentManagement.DFAgentDescription;
+import jade.domain.FIPAAgentManagement.Property;
+import jade.domain.FIPAAgentManagement.SearchConstraints;
+import jade.domain.FIPAAgentManagement.ServiceDescription;
+import jade.domain.FIPAException;
+import org.Settings;
+import org.Util;
+import org.exceptions.DirectoryPageFullException;
+import org.exceptions.InvalidServiceSpecification;
+import org.logging.LogLevel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * DF view shared by all agents of one container. The first agent asking for a service type loads it from the DF,
+ * page by page; after that the container's {@link org.agents.DirectoryAgent} keeps it current from DF notifications
+ * and every other agent reads it without talking to the DF.
+ * <p>
+ * The DF caps the size of a search result, so every registration carries a {@link #BUCKET} property and a type is
+ * loaded one bucket at a time, each bucket staying well below the cap. A bucket that fills a whole page is loaded
+ * again through its {@link #SHARD}s, a split {@value #SHARDS_PER_BUCKET} times finer; a full shard fails the load
+ * instead of returning a directory with providers missing.
+ * <p>
+ * Markets also list their catalog as {@link #ITEM} properties, which the snapshot turns into an item to market index
+ * so a delivery agent only has to ask the markets that carry something from an order. Delivery agents list their
+ * fee as a {@link #FEE} property, so a client can pick whom to order from without asking everyone for a quote.
+ */
+public class DirectorySnapshot {
+    public static final String BUCKET = "bucket";
+    public static final String ITEM = "item";
+    public static final String FEE = "fee";
+    public static final String SHARD = "shard";
+
+    private static final int SHARDS_PER_BUCKET = 16;
+
+    private static final Map<String, DirectorySnapshot> _containers = new ConcurrentHashMap<>();
+
+    private final Map<String, Set<AID>> _providers = new LinkedHashMap<>();
+    private final Map<String, Set<AID>> _itemProviders = new HashMap<>();
+    private final Map<AID, Set<String>> _providerItems = new HashMap<>();
+    private final Map<AID, Double> _providerFees = new HashMap<>();
+    private final Set<String> _loadedTypes = new HashSet<>();
+    private final Map<String, Object> _loadLocks = new ConcurrentHashMap<>();
+
+    public static DirectorySnapshot of(final Agent agent) {
+        return _containers.computeIfAbsent(agent.here().getName(), container -> new DirectorySnapshot());
+    }
+
+    /**
+     * Service description of a provider, tagged with its paging bucket.
+     */
+    public static ServiceDescription describe(final Agent agent, final String type) {
+        return describe(agent, type, List.of());
+    }
+
+    /**
+     * Service description of a provider of the given items, tagged with its paging bucket.
+     */
+    public static ServiceDescription describe(final Agent agent, final String type, final Collection<String> items) {
+        final ServiceDescription sd = new ServiceDescription();
+        sd.setType(type);
+        sd.setName(agent.getLocalName());
+        sd.setOwnership(agent.getLocalName());
+        sd.addProperties(new Property(BUCKET, String.valueOf(bucketOf(agent.getLocalName()))));
+        sd.addProperties(new Property(SHARD, String.valueOf(shardOf(agent.getLocalName()))));
+        for (String item : items) {
+            sd.addProperties(new Property(ITEM, item));
+        }
+        return sd;
+    }
+
+    public List<AID> providers(final Agent reader, final String type) {
+        synchronized (this) {
+            if (_loadedTypes.contains(type)) {
+                return new ArrayList<>(_providers.getOrDefault(type, Set.of()));
+            }
+        }
+
+        // One agent loads a type while the others asking for it wait; notifications keep being applied meanwhile.
+        synchronized (_loadLocks.computeIfAbsent(type, t -> new Object())) {
+            synchronized (this) {
+                if (_loadedTypes.contains(type)) {
+                    return new ArrayList<>(_providers.getOrDefault(type, Set.of()));
+                }
+            }
+            final List<DFAgentDescription> loaded = search(reader, type);
+            synchronized (this) {
+                final Set<AID> providers = _providers.computeIfAbsent(type, t -> new LinkedHashSet<>());
+                for (DFAgentDescription description : loaded) {
+                    providers.add(description.getName());
+                    indexProperties(description);
+                }
+                _loadedTypes.add(type);
+                return new ArrayList<>(providers);
+            }
+        }
+    }
+
+    /**
+     * The given providers that carry at least one of the items, in their original order. Providers the snapshot has
+     * no catalog for are kept, as they might carry anything.
+     */
+    public synchronized List<AID> carrying(final List<AID> candidates, final Collection<String> items) {
+        final Set<AID> carriers = new HashSet<>();
+        for (String item : items) {
+            carriers.addAll(_itemProviders.getOrDefault(item, Set.of()));
+        }
+
+        final List<AID> result = new ArrayList<>();
+        for (AID candidate : candidates) {
+            if (carriers.contains(candidate) || !_providerItems.containsKey(candidate)) {
+                result.add(candidate);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Applies one DF notification: a description with services (re)registers the agent for those types, one
+     * without services means the agent deregistered.
+     */
+    public synchronized void apply(final DFAgentDescription description) {
+        final AID agent = description.getName();
+        for (Set<AID> providers : _providers.values()) {
+            providers.remove(agent);
+        }
+        final Iterator<?> services = description.getAllServices();
+        while (services.hasNext()) {
+            final ServiceDescription sd = (ServiceDescription) services.next();
+            _providers.computeIfAbsent(sd.getType(), type -> new LinkedHashSet<>()).add(agent);
+        }
+        indexProperties(description);
+    }
+
+    /**
+     * The fee a provider advertised, NaN when it did not advertise one.
+     */
+    public synchronized double fee(final AID provider) {
+        return _providerFees.getOrDefault(provider, Double.NaN);
+    }
+
+    private void indexProperties(final DFAgentDescription description) {
+        final AID agent = description.getName();
+        _providerFees.remove(agent);
+        final Set<String> previous = _providerItems.remove(agent);
+        if (previous != null) {
+            for (String item : previous) {
+                final Set<AID> carriers = _itemProviders.get(item);
+                carriers.remove(agent);
+                if (carriers.isEmpty()) {
+                    _itemProviders.remove(item);
+                }
+            }
+        }
+
+        final Set<String> items = new HashSet<>();
+        final Iterator<?> services = description.getAllServices();
+        while (services.hasNext()) {
+            final Iterator<?> properties = ((ServiceDescription) services.next()).getAllProperties();
+            while (properties.hasNext()) {
+                final Property property = (Property) properties.next();
+                if (ITEM.equals(property.getName())) {
+                    items.add(String.valueOf(property.getValue()));
+                } else if (FEE.equals(property.getName())) {
+                    try {
+                        _providerFees.put(agent, Double.parseDouble(String.valueOf(property.getValue())));
+                    } catch (final NumberFormatException ignored) {
+                        // Treated like a provider without a fee.
+                    }
+                }
+            }
+        }
+        if (items.isEmpty()) {
+            return;
+        }
+        _providerItems.put(agent, items);
+        for (String item : items) {
+            _itemProviders.computeIfAbsent(item, i -> new HashSet<>()).add(agent);
+        }
+    }
+
+    private static List<DFAgentDescription> search(final Agent reader, final String type) {
+        final SearchConstraints constraints = new SearchConstraints();
+        constraints.setMaxResults((long) Settings.directoryPageSize);
+
+        final List<DFAgentDescription> providers = new ArrayList<>();
+        try {
+            for (int bucket = 0; bucket < Settings.directoryBuckets; bucket++) {
+                final DFAgentDescription[] page = searchPage(reader, type, BUCKET, bucket, constraints);
+                if (page.length < Settings.directoryPageSize) {
+                    providers.addAll(Arrays.asList(page));
+                    continue;
+                }
+                Util.log(reader, LogLevel.WARN, "Directory bucket " + bucket + " of " + type + " is full (" + page.length
+                        + " results), loading it shard by shard; raise directory.buckets");
+                // Shards of a bucket are the ones congruent to it, as shardOf only splits bucketOf further.
+                for (int shard = bucket; shard < Settings.directoryBuckets * SHARDS_PER_BUCKET; shard += Settings.directoryBuckets) {
+                    final DFAgentDescription[] shardPage = searchPage(reader, type, SHARD, shard, constraints);
+                    if (shardPage.length >= Settings.directoryPageSize) {
+                        throw new DirectoryPageFullException(type, shard, shardPage.length);
+                    }
+                    providers.addAll(Arrays.asList(shardPage));
+                }
+            }
+        } catch (final FIPAException e) {
+            throw new InvalidServiceSpecification(e);
+        }
+        return providers;
+    }
+
+    private static DFAgentDescription[] searchPage(final Agent reader, final String type, final String property,
+                                                   final int value, final SearchConstraints constraints) throws FIPAException {
+        final ServiceDescription sd = new ServiceDescription();
+        sd.setType(type);
+        sd.addProperties(new Property(property, String.valueOf(value)));
+        final DFAgentDescription template = new DFAgentDescription();
+        template.addServices(sd);
+        return DFService.search(reader, template, constraints);
+    }
+
+    private static int bucketOf(final String localName) {
+        return Math.floorMod(localName.hashCode(), Settings.directoryBuckets);
+    }
+
+    private static int shardOf(final String localName) {
+        return Math.floorMod(localName.hashCode(), Settings.directoryBuckets * SHARDS_PER_BUCKET);
+    }
+}
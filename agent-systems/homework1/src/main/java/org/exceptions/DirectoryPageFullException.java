@@ -0,0 +1,10 @@
+package org.exceptions;
+
+import static java.lang.String.format;
+
+public class DirectoryPageFullException extends RuntimeException {
+
+    public DirectoryPageFullException(final String type, final int shard, final int results) {
+        super(format("Directory shard %d of %s is full (%d results), raise directory.buckets or directory.page.size.", shard, type, results));
+    }
+}
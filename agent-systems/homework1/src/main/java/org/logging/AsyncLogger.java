@@ -0,0 +1,177 @@
+package org.logging;
+
+import org.Settings;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Log sink behind {@link org.Util#log}. Agent threads only filter the record and push it into a lock-free ring buffer;
+ * a single daemon thread formats the records and writes them in batches to stdout or to {@code log.file}.
+ * With {@code log.async=false} records are written directly on the calling thread, like before.
+ */
+public class AsyncLogger {
+    private static final int BATCH_SIZE = 1024;
+    private static final long IDLE_PARK_NANOS = 1_000_000L;
+
+    private static final AsyncLogger INSTANCE = new AsyncLogger();
+
+    private final LogRingBuffer<Record> _buffer = new LogRingBuffer<>(Settings.logBufferSize);
+    private final boolean _async = Settings.logAsync;
+    private final Writer _out;
+    private final Thread _writer;
+    private volatile boolean _running = true;
+    private volatile long _written = 0;
+
+    private AsyncLogger() {
+        _out = openOutput();
+        _writer = new Thread(this::drainLoop, "log-writer");
+        _writer.setDaemon(true);
+        if (_async) {
+            _writer.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "log-writer-shutdown"));
+        }
+    }
+
+    public static boolean isEnabled(final String agentName, final LogLevel level) {
+        if (level.ordinal() < Settings.logLevel.ordinal() || level == LogLevel.OFF) {
+            return false;
+        }
+        final Set<String> agents = Settings.logAgents;
+        return agents.isEmpty() || agents.contains(agentName);
+    }
+
+    public static void log(final String agentName, final LogLevel level, final String message) {
+        if (isEnabled(agentName, level)) {
+            INSTANCE.append(new Record(agentName, level, message));
+        }
+    }
+
+    /**
+     * Blocks until every record logged so far has been written.
+     */
+    public static void flush() {
+        INSTANCE.awaitDrained();
+    }
+
+    private void append(final Record record) {
+        if (!_async) {
+            synchronized (this) {
+                write(record, new StringBuilder());
+                flushOutput();
+            }
+            return;
+        }
+
+        // A full buffer means the writer is behind; wait for it rather than lose the record.
+        while (!_buffer.offer(record)) {
+            Thread.yield();
+        }
+    }
+
+    private void drainLoop() {
+        final StringBuilder batch = new StringBuilder(64 * BATCH_SIZE);
+        long drained = 0;
+        while (_running) {
+            final int count = drainBatch(batch);
+            drained += count;
+            if (count < BATCH_SIZE) {
+                flushOutput();
+                _written = drained;
+            }
+            if (count == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+
+        int count;
+        while ((count = drainBatch(batch)) > 0) {
+            drained += count;
+        }
+        flushOutput();
+        _written = drained;
+    }
+
+    private int drainBatch(final StringBuilder batch) {
+        int count = 0;
+        Record record;
+        while (count < BATCH_SIZE && (record = _buffer.poll()) != null) {
+            formatRecord(record, batch);
+            count++;
+        }
+        if (count > 0) {
+            try {
+                _out.append(batch);
+            } catch (IOException e) {
+                System.err.println("Could't write log batch: " + e.getMessage());
+            }
+            batch.setLength(0);
+        }
+        return count;
+    }
+
+    private void write(final Record record, final StringBuilder line) {
+        formatRecord(record, line);
+        try {
+            _out.append(line);
+        } catch (IOException e) {
+            System.err.println("Could't write log line: " + e.getMessage());
+        }
+    }
+
+    private static void formatRecord(final Record record, final StringBuilder out) {
+        out.append('[').append(record.agentName).append("] ");
+        if (record.level != LogLevel.INFO) {
+            out.append(record.level).append(": ");
+        }
+        out.append(record.message).append('\n');
+    }
+
+    private void flushOutput() {
+        try {
+            _out.flush();
+        } catch (IOException e) {
+            System.err.println("Could't flush log output: " + e.getMessage());
+        }
+    }
+
+    private void awaitDrained() {
+        if (!_async) {
+            return;
+        }
+        final long target = _buffer.claimed();
+        while (_written < target && _writer.isAlive()) {
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    private void shutdown() {
+        _running = false;
+        LockSupport.unpark(_writer);
+        try {
+            _writer.join(5_000L);
+        } catch (InterruptedException ignored) {
+        }
+        flushOutput();
+    }
+
+    private static Writer openOutput() {
+        try {
+            if (Settings.logFile != null) {
+                return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(Settings.logFile), StandardCharsets.UTF_8), 1 << 16);
+            }
+        } catch (IOException e) {
+            System.err.println("Could't open log file " + Settings.logFile + ", logging to stdout: " + e.getMessage());
+        }
+        return new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    private record Record(String agentName, LogLevel level, String message) {
+    }
+}
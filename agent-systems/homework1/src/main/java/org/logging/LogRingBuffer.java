@@ -0,0 +1,67 @@
+package org.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue for many producers and a single consumer. Every slot carries a sequence number:
+ * producers claim a position with one CAS on the tail and publish the slot by advancing its sequence,
+ * the consumer frees it by moving the sequence one lap ahead.
+ */
+class LogRingBuffer<E> {
+    private final int _mask;
+    private final Object[] _slots;
+    private final AtomicLongArray _sequences;
+    private final AtomicLong _tail = new AtomicLong();
+    private long _head = 0;
+
+    LogRingBuffer(final int capacity) {
+        final int size = Integer.highestOneBit(Math.max(2, capacity - 1) << 1);
+        _mask = size - 1;
+        _slots = new Object[size];
+        _sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            _sequences.set(i, i);
+        }
+    }
+
+    boolean offer(final E element) {
+        long position = _tail.get();
+        while (true) {
+            final int index = (int) (position & _mask);
+            final long difference = _sequences.get(index) - position;
+            if (difference == 0) {
+                if (_tail.compareAndSet(position, position + 1)) {
+                    _slots[index] = element;
+                    _sequences.lazySet(index, position + 1);
+                    return true;
+                }
+                position = _tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = _tail.get();
+            }
+        }
+    }
+
+    /**
+     * Number of positions claimed by producers so far.
+     */
+    long claimed() {
+        return _tail.get();
+    }
+
+    @SuppressWarnings("unchecked")
+    E poll() {
+        final int index = (int) (_head & _mask);
+        if (_sequences.get(index) != _head + 1) {
+            return null;
+        }
+        final E element = (E) _slots[index];
+        _slots[index] = null;
+        _sequences.lazySet(index, _head + _slots.length);
+        _head++;
+        return element;
+    }
+}
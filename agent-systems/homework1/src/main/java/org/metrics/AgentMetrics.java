@@ -0,0 +1,161 @@
+package org.metrics;
+
+import jade.core.Agent;
+import jade.lang.acl.ACLMessage;
+import org.Settings;
+import org.Util;
+import org.logging.LogLevel;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Live counters of one agent, registered as an MXBean while the agent runs (unless {@code metrics.jmx=false}).
+ * Messages are counted by conversation type, the part of the conversation id before the first ':'.
+ */
+public class AgentMetrics implements AgentMetricsMXBean {
+    private static final String NO_CONVERSATION = "none";
+
+    private final Agent _agent;
+    private final IntSupplier _activeHandlers;
+    private final Map<String, LongAdder> _sent = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> _received = new ConcurrentHashMap<>();
+    private final LatencyHistogram _quoteTimes = new LatencyHistogram();
+    private final LatencyHistogram _deliveryTimes = new LatencyHistogram();
+    private ObjectName _name;
+
+    private AgentMetrics(final Agent agent, final IntSupplier activeHandlers) {
+        _agent = agent;
+        _activeHandlers = activeHandlers;
+    }
+
+    public static AgentMetrics register(final Agent agent) {
+        return register(agent, () -> 0);
+    }
+
+    public static AgentMetrics register(final Agent agent, final IntSupplier activeHandlers) {
+        final AgentMetrics metrics = new AgentMetrics(agent, activeHandlers);
+        if (Settings.metricsJmx) {
+            try {
+                metrics._name = ObjectName.getInstance("org.agents:type=" + agent.getClass().getSimpleName() + ",name=" + ObjectName.quote(agent.getLocalName()));
+                server().registerMBean(metrics, metrics._name);
+            } catch (final JMException e) {
+                Util.log(agent, LogLevel.WARN, "Metrics not exposed over JMX: " + e.getMessage());
+                metrics._name = null;
+            }
+        }
+        return metrics;
+    }
+
+    public void unregister() {
+        if (_name == null) {
+            return;
+        }
+        try {
+            server().unregisterMBean(_name);
+        } catch (final JMException ignored) {
+            // Already gone, e.g. the platform was torn down twice.
+        }
+        _name = null;
+    }
+
+    public void sent(final ACLMessage msg) {
+        count(_sent, msg);
+    }
+
+    public void received(final ACLMessage msg) {
+        count(_received, msg);
+    }
+
+    public void quoted(final long nanos) {
+        _quoteTimes.record(nanos);
+    }
+
+    public void delivered(final long nanos) {
+        _deliveryTimes.record(nanos);
+    }
+
+    @Override
+    public Map<String, Long> getMessagesSent() {
+        return snapshot(_sent);
+    }
+
+    @Override
+    public Map<String, Long> getMessagesReceived() {
+        return snapshot(_received);
+    }
+
+    @Override
+    public int getMailboxDepth() {
+        return _agent.getCurQueueSize();
+    }
+
+    @Override
+    public int getActiveHandlers() {
+        return _activeHandlers.getAsInt();
+    }
+
+    @Override
+    public long getQuoteCount() {
+        return _quoteTimes.count();
+    }
+
+    @Override
+    public double getQuoteMeanMillis() {
+        return _quoteTimes.meanMillis();
+    }
+
+    @Override
+    public double getQuoteP50Millis() {
+        return _quoteTimes.percentileMillis(50);
+    }
+
+    @Override
+    public double getQuoteP99Millis() {
+        return _quoteTimes.percentileMillis(99);
+    }
+
+    @Override
+    public long getDeliveryCount() {
+        return _deliveryTimes.count();
+    }
+
+    @Override
+    public double getDeliveryMeanMillis() {
+        return _deliveryTimes.meanMillis();
+    }
+
+    @Override
+    public double getDeliveryP50Millis() {
+        return _deliveryTimes.percentileMillis(50);
+    }
+
+    @Override
+    public double getDeliveryP99Millis() {
+        return _deliveryTimes.percentileMillis(99);
+    }
+
+    private static void count(final Map<String, LongAdder> counters, final ACLMessage msg) {
+        final String convoId = msg.getConversationId();
+        final int separator = convoId == null ? -1 : convoId.indexOf(':');
+        final String type = convoId == null ? NO_CONVERSATION : separator < 0 ? convoId : convoId.substring(0, separator);
+        counters.computeIfAbsent(type, t -> new LongAdder()).increment();
+    }
+
+    private static Map<String, Long> snapshot(final Map<String, LongAdder> counters) {
+        final Map<String, Long> values = new TreeMap<>();
+        counters.forEach((type, counter) -> values.put(type, counter.sum()));
+        return values;
+    }
+
+    private static MBeanServer server() {
+        return ManagementFactory.getPlatformMBeanServer();
+    }
+}
@@ -0,0 +1,34 @@
+package org.metrics;
+
+import java.util.Map;
+
+/**
+ * What an agent exposes under {@code org.agents:type=<agent class>,name=<local name>}.
+ * Quote and delivery times are measured where the agent sees them: a client from sending its order, a delivery agent
+ * from receiving it, and a market from the stock query or purchase to its reply.
+ */
+public interface AgentMetricsMXBean {
+    Map<String, Long> getMessagesSent();
+
+    Map<String, Long> getMessagesReceived();
+
+    int getMailboxDepth();
+
+    int getActiveHandlers();
+
+    long getQuoteCount();
+
+    double getQuoteMeanMillis();
+
+    double getQuoteP50Millis();
+
+    double getQuoteP99Millis();
+
+    long getDeliveryCount();
+
+    double getDeliveryMeanMillis();
+
+    double getDeliveryP50Millis();
+
+    double getDeliveryP99Millis();
+}
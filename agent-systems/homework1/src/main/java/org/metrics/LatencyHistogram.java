@@ -0,0 +1,53 @@
+package org.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Power-of-two latency buckets over microseconds, backed by {@link LongAdder}s so that recording from many agent
+ * threads does not contend. Percentiles are the upper bound of the bucket they fall into.
+ */
+public class LatencyHistogram {
+    private static final int BUCKETS = 40;
+
+    private final LongAdder[] _buckets = new LongAdder[BUCKETS];
+    private final LongAdder _count = new LongAdder();
+    private final LongAdder _totalMicros = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            _buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(final long nanos) {
+        final long micros = Math.max(0, nanos / 1_000);
+        _buckets[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros))].increment();
+        _count.increment();
+        _totalMicros.add(micros);
+    }
+
+    public long count() {
+        return _count.sum();
+    }
+
+    public double meanMillis() {
+        final long count = _count.sum();
+        return count == 0 ? 0 : _totalMicros.sum() / 1_000.0 / count;
+    }
+
+    public double percentileMillis(final double percentile) {
+        final long count = _count.sum();
+        if (count == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += _buckets[i].sum();
+            if (seen >= rank) {
+                return (1L << i) / 1_000.0;
+            }
+        }
+        return (1L << (BUCKETS - 1)) / 1_000.0;
+    }
+}
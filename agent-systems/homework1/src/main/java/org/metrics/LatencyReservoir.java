@@ -0,0 +1,57 @@
+package org.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A uniform sample of at most {@code capacity} latencies (reservoir sampling), so that a run of any length keeps a
+ * fixed amount of memory. Runs with fewer samples than the capacity keep all of them and report exact percentiles;
+ * the count and the maximum always cover every recorded value.
+ */
+public class LatencyReservoir {
+    private final long[] _samples;
+    private long _count = 0;
+    private long _max = 0;
+
+    public LatencyReservoir(final int capacity) {
+        _samples = new long[capacity];
+    }
+
+    public synchronized void record(final long nanos) {
+        if (_count < _samples.length) {
+            _samples[(int) _count] = nanos;
+        } else {
+            final long slot = ThreadLocalRandom.current().nextLong(_count + 1);
+            if (slot < _samples.length) {
+                _samples[(int) slot] = nanos;
+            }
+        }
+        _count++;
+        _max = Math.max(_max, nanos);
+    }
+
+    public synchronized long count() {
+        return _count;
+    }
+
+    public synchronized long max() {
+        return _max;
+    }
+
+    public synchronized void clear() {
+        _count = 0;
+        _max = 0;
+    }
+
+    /**
+     * The kept samples in ascending order.
+     */
+    public long[] sorted() {
+        final long[] values;
+        synchronized (this) {
+            values = Arrays.copyOf(_samples, (int) Math.min(_count, _samples.length));
+        }
+        Arrays.sort(values);
+        return values;
+    }
+}
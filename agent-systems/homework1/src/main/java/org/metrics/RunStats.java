@@ -0,0 +1,257 @@
+package org.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Run-wide order timings recorded by the client behaviours and read by the {@link org.HeadlessRunner}.
+ * A client is finished once it got its delivery or gave up (no delivery service or no offers).
+ */
+public class RunStats {
+    private static final long POLL_MILLIS = 50L;
+    private static final int SAMPLES = 100_000;
+
+    private static final Map<String, Long> _orderSentNanos = new ConcurrentHashMap<>();
+    private static final LatencyReservoir _quoteLatencies = new LatencyReservoir(SAMPLES);
+    private static final LatencyReservoir _deliveryLatencies = new LatencyReservoir(SAMPLES);
+    private static final LatencyReservoir _offerCollectionTimes = new LatencyReservoir(SAMPLES);
+    private static final LatencyReservoir _lateOfferDelays = new LatencyReservoir(SAMPLES);
+    private static final AtomicInteger _partialSelections = new AtomicInteger();
+    private static final AtomicInteger _quotes = new AtomicInteger();
+    private static final AtomicInteger _partialQuotes = new AtomicInteger();
+    private static final AtomicInteger _partialDeliveries = new AtomicInteger();
+    private static final AtomicInteger _refusedQueries = new AtomicInteger();
+    private static final AtomicInteger _retriedQueries = new AtomicInteger();
+    private static final AtomicInteger _abandonedQueries = new AtomicInteger();
+    private static final AtomicInteger _openOrders = new AtomicInteger();
+    private static final AtomicInteger _refusedOrders = new AtomicInteger();
+    private static final AtomicInteger _expiredOrders = new AtomicInteger();
+    private static final AtomicInteger _delivered = new AtomicInteger();
+    private static final AtomicInteger _failed = new AtomicInteger();
+    private static volatile int _expectedClients = 0;
+    private static volatile long _firstOrderNanos = 0;
+    private static volatile long _lastDeliveryNanos = 0;
+
+    public static void reset() {
+        _orderSentNanos.clear();
+        _quoteLatencies.clear();
+        _deliveryLatencies.clear();
+        _offerCollectionTimes.clear();
+        _lateOfferDelays.clear();
+        _partialSelections.set(0);
+        _quotes.set(0);
+        _partialQuotes.set(0);
+        _partialDeliveries.set(0);
+        _refusedQueries.set(0);
+        _retriedQueries.set(0);
+        _abandonedQueries.set(0);
+        _openOrders.set(0);
+        _refusedOrders.set(0);
+        _expiredOrders.set(0);
+        _delivered.set(0);
+        _failed.set(0);
+        _firstOrderNanos = 0;
+        _lastDeliveryNanos = 0;
+        _expectedClients = 0;
+    }
+
+    public static void expectClients(final int clients) {
+        _expectedClients = clients;
+    }
+
+    public static void orderSent(final String client) {
+        final long now = System.nanoTime();
+        _orderSentNanos.putIfAbsent(client, now);
+        if (_firstOrderNanos == 0) {
+            _firstOrderNanos = now;
+        }
+    }
+
+    public static void quoteReceived(final String client) {
+        final Long sent = _orderSentNanos.get(client);
+        if (sent != null) {
+            _quoteLatencies.record(System.nanoTime() - sent);
+        }
+    }
+
+    public static void offersCollected(final long waitedNanos, final boolean partial) {
+        _offerCollectionTimes.record(waitedNanos);
+        if (partial) {
+            _partialSelections.incrementAndGet();
+        }
+    }
+
+    /**
+     * An offer that arrived after its client had already picked one, that much later.
+     */
+    public static void lateOffer(final long nanosAfterSelection) {
+        _lateOfferDelays.record(nanosAfterSelection);
+    }
+
+    /**
+     * A delivery agent quoted an order, {@code partial} when some markets had not answered by the deadline.
+     */
+    public static void quoteComputed(final boolean partial) {
+        _quotes.incrementAndGet();
+        if (partial) {
+            _partialQuotes.incrementAndGet();
+        }
+    }
+
+    public static void deliveryFinished(final boolean partial) {
+        if (partial) {
+            _partialDeliveries.incrementAndGet();
+        }
+    }
+
+    /**
+     * A market shed a stock query; the delivery agent then either retried it later or quoted without that market.
+     */
+    public static void stockQueryRefused() {
+        _refusedQueries.incrementAndGet();
+    }
+
+    public static void stockQueryRetried() {
+        _retriedQueries.incrementAndGet();
+    }
+
+    public static void stockQueryGivenUp() {
+        _abandonedQueries.incrementAndGet();
+    }
+
+    /**
+     * Order handlers of the delivery agents: started, ended, refused at the open order cap or given up on timeout.
+     */
+    public static void orderOpened() {
+        _openOrders.incrementAndGet();
+    }
+
+    public static void orderClosed() {
+        _openOrders.decrementAndGet();
+    }
+
+    public static void orderRefused() {
+        _refusedOrders.incrementAndGet();
+    }
+
+    public static void orderExpired() {
+        _expiredOrders.incrementAndGet();
+    }
+
+    public static void delivered(final String client) {
+        final long now = System.nanoTime();
+        final Long sent = _orderSentNanos.remove(client);
+        if (sent != null) {
+            _deliveryLatencies.record(now - sent);
+        }
+        _lastDeliveryNanos = now;
+        _delivered.incrementAndGet();
+    }
+
+    public static void failed(final String client) {
+        _orderSentNanos.remove(client);
+        _failed.incrementAndGet();
+    }
+
+    public static boolean awaitCompletion(final long timeoutMillis) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (pending() > 0) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(POLL_MILLIS);
+        }
+        return true;
+    }
+
+    public static int delivered() {
+        return _delivered.get();
+    }
+
+    public static int failed() {
+        return _failed.get();
+    }
+
+    public static int pending() {
+        return Math.max(0, _expectedClients - _delivered.get() - _failed.get());
+    }
+
+    public static long firstOrderNanos() {
+        return _firstOrderNanos;
+    }
+
+    public static long lastDeliveryNanos() {
+        return _lastDeliveryNanos;
+    }
+
+    /**
+     * The recorded latencies, up to {@value #SAMPLES} per kind; see {@link LatencyReservoir}.
+     */
+    public static LatencyReservoir quoteLatencies() {
+        return _quoteLatencies;
+    }
+
+    public static LatencyReservoir deliveryLatencies() {
+        return _deliveryLatencies;
+    }
+
+    public static LatencyReservoir offerCollectionTimes() {
+        return _offerCollectionTimes;
+    }
+
+    public static LatencyReservoir lateOfferDelays() {
+        return _lateOfferDelays;
+    }
+
+    public static int partialSelections() {
+        return _partialSelections.get();
+    }
+
+    public static int quotes() {
+        return _quotes.get();
+    }
+
+    public static int partialQuotes() {
+        return _partialQuotes.get();
+    }
+
+    public static int partialDeliveries() {
+        return _partialDeliveries.get();
+    }
+
+    public static int openOrders() {
+        return _openOrders.get();
+    }
+
+    public static int refusedOrders() {
+        return _refusedOrders.get();
+    }
+
+    public static int expiredOrders() {
+        return _expiredOrders.get();
+    }
+
+    public static int refusedQueries() {
+        return _refusedQueries.get();
+    }
+
+    public static int retriedQueries() {
+        return _retriedQueries.get();
+    }
+
+    public static int abandonedQueries() {
+        return _abandonedQueries.get();
+    }
+
+    /**
+     * Nearest-rank percentile of an ascending array, 0 when empty.
+     */
+    public static long percentile(final long[] sorted, final double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        final int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+}
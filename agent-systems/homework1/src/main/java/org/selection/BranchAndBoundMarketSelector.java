@@ -0,0 +1,180 @@
+package org.selection;
+
+import jade.core.AID;
+import org.codec.ItemStock;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Buys every item at the lowest price any market offers and, among the selections that reach that total, searches
+ * for the one with the fewest markets (every item is bought from a selected market offering it at its lowest price).
+ * The search starts from buying each item at its cheapest offer and stops after the time budget, so the total is
+ * never above the greedy one; only the number of markets may be above the optimum when the budget runs out.
+ */
+public class BranchAndBoundMarketSelector implements MarketSelector {
+    private static final double EPSILON = 1e-9;
+    private static final int CLOCK_CHECK_INTERVAL = 256;
+
+    private final long _budgetNanos;
+
+    public BranchAndBoundMarketSelector(final long budgetMillis) {
+        _budgetNanos = budgetMillis * 1_000_000L;
+    }
+
+    @Override
+    public MarketSelection select(final List<String> orderItems, final Map<AID, ItemStock> marketStocks) {
+        final MarketIndex index = new MarketIndex(orderItems, marketStocks);
+        final Search search = new Search(index, System.nanoTime() + _budgetNanos);
+
+        for (int i = 0; i < index.itemCount(); i++) {
+            if (index._offerMarkets[i].length > 0 && !search._isChosen[index._offerMarkets[i][0]]) {
+                search.choose(index._offerMarkets[i][0]);
+            }
+        }
+        search.recordBest();
+        while (search._chosenCount > 0) {
+            search.unchoose();
+        }
+        search.run();
+
+        final MarketSelection selection = new MarketSelection();
+        for (int i = 0; i < index.itemCount(); i++) {
+            final int market = search.cheapestBest(i);
+            if (market < 0) {
+                selection.addMissing(index._items.get(i));
+            } else {
+                selection.add(index._markets[market], index._items.get(i), index.priceAt(i, market));
+            }
+        }
+        return selection;
+    }
+
+    /**
+     * Minimum set cover in which a market only covers the items it offers at their lowest price.
+     */
+    private static class Search {
+        private final MarketIndex _index;
+        private final long _deadline;
+        private final int[] _tieCount;
+        private final int[][] _tieItems;
+        private final int[] _coverDepth;
+        private final int[] _chosen;
+        private final boolean[] _isChosen;
+        private final boolean[] _isExcluded;
+        private int _chosenCount = 0;
+        private int _uncovered = 0;
+
+        private boolean[] _best;
+        private int _bestCount = Integer.MAX_VALUE;
+        private long _nodes = 0;
+        private boolean _timedOut = false;
+
+        Search(final MarketIndex index, final long deadline) {
+            _index = index;
+            _deadline = deadline;
+            _tieCount = new int[index.itemCount()];
+            _coverDepth = new int[index.itemCount()];
+            _chosen = new int[index.marketCount()];
+            _isChosen = new boolean[index.marketCount()];
+            _isExcluded = new boolean[index.marketCount()];
+
+            // Offers are sorted by price, so the cheapest ones of an item lead its list.
+            final int[] tieItemCount = new int[index.marketCount()];
+            for (int i = 0; i < index.itemCount(); i++) {
+                final double[] prices = index._offerPrices[i];
+                while (_tieCount[i] < prices.length && prices[_tieCount[i]] <= prices[0] + EPSILON) {
+                    tieItemCount[index._offerMarkets[i][_tieCount[i]++]]++;
+                }
+                if (_tieCount[i] > 0) {
+                    _uncovered++;
+                }
+            }
+            _tieItems = new int[index.marketCount()][];
+            for (int m = 0; m < index.marketCount(); m++) {
+                _tieItems[m] = new int[tieItemCount[m]];
+                tieItemCount[m] = 0;
+            }
+            for (int i = 0; i < index.itemCount(); i++) {
+                for (int k = 0; k < _tieCount[i]; k++) {
+                    final int market = index._offerMarkets[i][k];
+                    _tieItems[market][tieItemCount[market]++] = i;
+                }
+            }
+        }
+
+        void run() {
+            if (_timedOut || (++_nodes % CLOCK_CHECK_INTERVAL == 0 && System.nanoTime() > _deadline)) {
+                _timedOut = true;
+                return;
+            }
+
+            if (_uncovered == 0) {
+                if (_chosenCount < _bestCount) {
+                    recordBest();
+                }
+                return;
+            }
+
+            if (_chosenCount + 1 >= _bestCount) return;
+
+            int pivot = -1;
+            for (int i = 0; i < _index.itemCount(); i++) {
+                if (_coverDepth[i] == 0 && _tieCount[i] > 0 && (pivot < 0 || _tieCount[i] < _tieCount[pivot])) {
+                    pivot = i;
+                }
+            }
+
+            // Once a market has been tried for the pivot it is excluded from the sibling branches,
+            // so every market set is visited at most once.
+            final int[] offerMarkets = _index._offerMarkets[pivot];
+            final int[] tried = new int[_tieCount[pivot]];
+            int triedCount = 0;
+            for (int k = 0; k < _tieCount[pivot]; k++) {
+                final int market = offerMarkets[k];
+                if (_timedOut) break;
+                if (_isExcluded[market]) continue;
+                choose(market);
+                run();
+                unchoose();
+                _isExcluded[market] = true;
+                tried[triedCount++] = market;
+            }
+            for (int t = 0; t < triedCount; t++) {
+                _isExcluded[tried[t]] = false;
+            }
+        }
+
+        void choose(final int market) {
+            for (int item : _tieItems[market]) {
+                if (_coverDepth[item]++ == 0) {
+                    _uncovered--;
+                }
+            }
+            _isChosen[market] = true;
+            _chosen[_chosenCount++] = market;
+        }
+
+        void unchoose() {
+            final int market = _chosen[--_chosenCount];
+            for (int item : _tieItems[market]) {
+                if (--_coverDepth[item] == 0) {
+                    _uncovered++;
+                }
+            }
+            _isChosen[market] = false;
+        }
+
+        void recordBest() {
+            _best = _isChosen.clone();
+            _bestCount = _chosenCount;
+        }
+
+        int cheapestBest(final int item) {
+            for (int market : _index._offerMarkets[item]) {
+                if (_best[market]) return market;
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.selection;
+
+import jade.core.AID;
+import org.codec.ItemStock;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Same choice rule as the original pass-by-pass greedy (most remaining items first, cheaper market on ties).
+ * A pass counts each market's coverage of the remaining items on the index bitsets and only prices the markets
+ * that tie for the lead.
+ */
+public class GreedyMarketSelector implements MarketSelector {
+
+    @Override
+    public MarketSelection select(final List<String> orderItems, final Map<AID, ItemStock> marketStocks) {
+        final MarketIndex index = new MarketIndex(orderItems, marketStocks);
+        final int[] picks = new int[index.itemCount()];
+        final int[] passOrder = pick(index, picks);
+
+        final MarketSelection selection = new MarketSelection();
+        for (int i = 0; i < index.itemCount(); i++) {
+            if (picks[i] < 0) {
+                selection.addMissing(index._items.get(i));
+            }
+        }
+        for (int m : passOrder) {
+            for (int i : index._marketItems[m]) {
+                if (picks[i] == m) {
+                    selection.add(index._markets[m], index._items.get(i), index.priceAt(i, m));
+                }
+            }
+        }
+        return selection;
+    }
+
+    /**
+     * Runs the greedy passes, fills {@code picks} with the market chosen for every order item (-1 if none)
+     * and returns the markets in the order they were selected.
+     */
+    static int[] pick(final MarketIndex index, final int[] picks) {
+        Arrays.fill(picks, -1);
+        final int[] passOrder = new int[index.marketCount()];
+        int passes = 0;
+        final long[] remaining = index._availableBits.clone();
+
+        while (true) {
+            int selected = -1;
+            int maxCount = 0;
+            double selectedCost = 0.0;
+            for (int m = 0; m < index.marketCount(); m++) {
+                final int count = index.coverCount(m, remaining);
+                if (count == 0 || count < maxCount) continue;
+                if (count > maxCount) {
+                    // Priced only once another market ties with it.
+                    maxCount = count;
+                    selected = m;
+                    selectedCost = Double.NaN;
+                    continue;
+                }
+                if (Double.isNaN(selectedCost)) {
+                    selectedCost = index.coverCost(selected, remaining);
+                }
+                final double cost = index.coverCost(m, remaining);
+                if (cost < selectedCost) {
+                    selected = m;
+                    selectedCost = cost;
+                }
+            }
+            if (selected < 0) {
+                return Arrays.copyOf(passOrder, passes);
+            }
+            passOrder[passes++] = selected;
+
+            for (int i : index._marketItems[selected]) {
+                if (picks[i] < 0) {
+                    picks[i] = selected;
+                }
+            }
+            index.removeCovered(remaining, selected);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package org.selection;
+
+import jade.core.AID;
+import org.codec.ItemDictionary;
+import org.codec.ItemStock;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inverted item -> markets index over the markets that answered a single order.
+ * Markets are numbered in the iteration order of the stock map and every item keeps its offers sorted by price.
+ * <p>
+ * Coverage is also kept as bitsets over the positions in the order: one per market, plus the set of items anyone
+ * carries. Counting what a market adds to a set of remaining items is then an AND and a popcount per 64 items.
+ */
+class MarketIndex {
+    private static final int MARKET_BITS = 20;
+
+    final List<String> _items;
+    final AID[] _markets;
+    final int[][] _offerMarkets;
+    final double[][] _offerPrices;
+    final int[][] _marketItems;
+    final long[][] _marketBits;
+    final long[] _availableBits;
+    private final double[][] _marketPrices;
+
+    MarketIndex(final List<String> orderItems, final Map<AID, ItemStock> marketStocks) {
+        final int items = orderItems.size();
+        _items = orderItems;
+        _markets = marketStocks.keySet().toArray(new AID[0]);
+        final ItemStock[] stocks = marketStocks.values().toArray(new ItemStock[0]);
+
+        // Order positions by dictionary id (chained for an item ordered twice), so a market's stock is matched
+        // against the order by walking its own entries instead of searching it for every ordered item.
+        final int[] firstPosition = new int[ItemDictionary.size()];
+        final int[] nextPosition = new int[items];
+        Arrays.fill(firstPosition, -1);
+        for (int i = items - 1; i >= 0; i--) {
+            final int id = ItemDictionary.idOf(orderItems.get(i));
+            nextPosition[i] = id < 0 || id >= firstPosition.length ? -1 : firstPosition[id];
+            if (id >= 0 && id < firstPosition.length) {
+                firstPosition[id] = i;
+            }
+        }
+
+        final int words = (items + 63) >>> 6;
+        final int[] offerCount = new int[items];
+        _marketBits = new long[_markets.length][words];
+        _availableBits = new long[words];
+        for (int m = 0; m < _markets.length; m++) {
+            final ItemStock stock = stocks[m];
+            for (int e = 0; e < stock.size(); e++) {
+                final int id = stock.idAt(e);
+                for (int i = id < firstPosition.length ? firstPosition[id] : -1; i >= 0; i = nextPosition[i]) {
+                    _marketBits[m][i >>> 6] |= 1L << i;
+                    offerCount[i]++;
+                }
+            }
+            for (int w = 0; w < words; w++) {
+                _availableBits[w] |= _marketBits[m][w];
+            }
+        }
+
+        // An offer is sorted as one long: price in cents above the market number, so equal prices keep market order.
+        final long[][] offers = new long[items][];
+        for (int i = 0; i < items; i++) {
+            offers[i] = new long[offerCount[i]];
+        }
+        Arrays.fill(offerCount, 0);
+        final long[] cents = new long[items];
+        _marketItems = new int[_markets.length][];
+        _marketPrices = new double[_markets.length][];
+        for (int m = 0; m < _markets.length; m++) {
+            final ItemStock stock = stocks[m];
+            for (int e = 0; e < stock.size(); e++) {
+                final int id = stock.idAt(e);
+                for (int i = id < firstPosition.length ? firstPosition[id] : -1; i >= 0; i = nextPosition[i]) {
+                    cents[i] = stock.centsAt(e);
+                }
+            }
+
+            int count = 0;
+            for (long word : _marketBits[m]) {
+                count += Long.bitCount(word);
+            }
+            _marketItems[m] = new int[count];
+            _marketPrices[m] = new double[count];
+            int k = 0;
+            for (int w = 0; w < words; w++) {
+                for (long bits = _marketBits[m][w]; bits != 0; bits &= bits - 1) {
+                    final int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    _marketItems[m][k] = i;
+                    _marketPrices[m][k++] = cents[i] / 100.0;
+                    offers[i][offerCount[i]++] = (cents[i] << MARKET_BITS) | m;
+                }
+            }
+        }
+
+        _offerMarkets = new int[items][];
+        _offerPrices = new double[items][];
+        for (int i = 0; i < items; i++) {
+            Arrays.sort(offers[i]);
+            _offerMarkets[i] = new int[offers[i].length];
+            _offerPrices[i] = new double[offers[i].length];
+            for (int o = 0; o < offers[i].length; o++) {
+                _offerMarkets[i][o] = (int) (offers[i][o] & ((1 << MARKET_BITS) - 1));
+                _offerPrices[i][o] = (offers[i][o] >>> MARKET_BITS) / 100.0;
+            }
+        }
+    }
+
+    int itemCount() {
+        return _items.size();
+    }
+
+    int marketCount() {
+        return _markets.length;
+    }
+
+    double priceAt(final int item, final int market) {
+        final int k = Arrays.binarySearch(_marketItems[market], item);
+        return k < 0 ? Double.NaN : _marketPrices[market][k];
+    }
+
+    /**
+     * How many of the {@code remaining} items the market carries.
+     */
+    int coverCount(final int market, final long[] remaining) {
+        final long[] bits = _marketBits[market];
+        int count = 0;
+        for (int w = 0; w < bits.length; w++) {
+            count += Long.bitCount(bits[w] & remaining[w]);
+        }
+        return count;
+    }
+
+    /**
+     * What the market charges for the {@code remaining} items it carries, summed in order position.
+     */
+    double coverCost(final int market, final long[] remaining) {
+        final int[] marketItems = _marketItems[market];
+        double cost = 0.0;
+        for (int k = 0; k < marketItems.length; k++) {
+            final int i = marketItems[k];
+            if ((remaining[i >>> 6] & (1L << i)) != 0) {
+                cost += _marketPrices[market][k];
+            }
+        }
+        return cost;
+    }
+
+    void removeCovered(final long[] remaining, final int market) {
+        final long[] bits = _marketBits[market];
+        for (int w = 0; w < bits.length; w++) {
+            remaining[w] &= ~bits[w];
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package org.selection;
+
+import jade.core.AID;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Getter
+public class MarketSelection {
+    private final Map<AID, List<String>> _marketItems = new LinkedHashMap<>();
+    private final Map<AID, Double> _marketCosts = new LinkedHashMap<>();
+    private final List<String> _missingItems = new ArrayList<>();
+    private double _totalCost = 0.0;
+
+    void add(final AID market, final String item, final double price) {
+        _marketItems.computeIfAbsent(market, m -> new ArrayList<>()).add(item);
+        _marketCosts.merge(market, price, Double::sum);
+        _totalCost += price;
+    }
+
+    void addMissing(final String item) {
+        _missingItems.add(item);
+    }
+}
@@ -0,0 +1,18 @@
+package org.selection;
+
+import jade.core.AID;
+import org.codec.ItemStock;
+
+import java.util.List;
+import java.util.Map;
+
+public interface MarketSelector {
+    MarketSelection select(List<String> orderItems, Map<AID, ItemStock> marketStocks);
+
+    static MarketSelector forMode(final SelectionMode mode, final long budgetMillis) {
+        return switch (mode) {
+            case GREEDY -> new GreedyMarketSelector();
+            case EXACT -> new BranchAndBoundMarketSelector(budgetMillis);
+        };
+    }
+}
@@ -0,0 +1,6 @@
+package org.selection;
+
+public enum SelectionMode {
+    GREEDY,
+    EXACT
+}
@@ -0,0 +1,40 @@
+package org.selection;
+
+import jade.core.AID;
+import org.Settings;
+import org.codec.ItemStock;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Pool shared by every delivery agent of the JVM that computes quotes off the agent threads, so a delivery agent
+ * keeps reading its mailbox while a large order is optimized. Sized by {@code delivery.selection.workers};
+ * with 0 the selection runs on the calling thread and the returned future is already done.
+ */
+public class SelectionWorkers {
+    private static final ForkJoinPool pool = Settings.deliverySelectionWorkers > 0
+            ? new ForkJoinPool(Settings.deliverySelectionWorkers)
+            : null;
+
+    private SelectionWorkers() {
+    }
+
+    /**
+     * The stocks must not change until the future is done. A selector that throws completes the future exceptionally,
+     * on either path.
+     */
+    public static CompletableFuture<MarketSelection> select(final MarketSelector selector, final List<String> orderItems,
+                                                            final Map<AID, ItemStock> marketStocks) {
+        if (pool == null) {
+            try {
+                return CompletableFuture.completedFuture(selector.select(orderItems, marketStocks));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        return CompletableFuture.supplyAsync(() -> selector.select(orderItems, marketStocks), pool);
+    }
+}
@@ -0,0 +1,118 @@
+package org.tracing;
+
+import jade.core.Agent;
+import org.Settings;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records the hops of an order as spans and writes them to {@code trace.file} in the Chrome trace-event format
+ * (load it in chrome://tracing or ui.perfetto.dev). Every agent is one track.
+ * <p>
+ * Spans are keyed by the part of the conversation id after the type, {@code <client>-<delivery>:<uuid>}, and whether an
+ * order is traced only depends on that key, so all agents sample the same orders without telling each other.
+ * Off unless {@code trace.file} is set.
+ */
+public class OrderTracer {
+    private static final long BASE_NANOS = System.nanoTime();
+
+    private static final Queue<String> _events = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger _recorded = new AtomicInteger();
+    private static final AtomicInteger _dropped = new AtomicInteger();
+    private static final Map<String, Integer> _tracks = new ConcurrentHashMap<>();
+    private static final AtomicInteger _nextTrack = new AtomicInteger();
+
+    static {
+        if (enabled()) {
+            Runtime.getRuntime().addShutdownHook(new Thread(OrderTracer::write, "trace-writer"));
+        }
+    }
+
+    public static boolean enabled() {
+        return Settings.traceFile != null;
+    }
+
+    /**
+     * Whether the order of this conversation id is traced.
+     */
+    public static boolean sampled(final String conversationId) {
+        if (!enabled() || conversationId == null) {
+            return false;
+        }
+        if (Settings.traceSampleRate >= 1.0) {
+            return true;
+        }
+        // Murmur3 finalizer, String.hashCode alone is too regular over similar uuids.
+        int h = orderKey(conversationId).hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return (h & 0x7fffffff) < Settings.traceSampleRate * Integer.MAX_VALUE;
+    }
+
+    public static void span(final Agent agent, final String name, final String conversationId, final long startNanos, final long endNanos) {
+        if (startNanos <= 0 || !sampled(conversationId)) {
+            return;
+        }
+        if (_recorded.incrementAndGet() > Settings.traceMaxEvents) {
+            _dropped.incrementAndGet();
+            return;
+        }
+        _events.add(String.format(Locale.US,
+                "{\"name\":\"%s\",\"cat\":\"order\",\"ph\":\"X\",\"ts\":%.3f,\"dur\":%.3f,\"pid\":1,\"tid\":%d,\"args\":{\"order\":\"%s\"}}",
+                escape(name), (startNanos - BASE_NANOS) / 1e3, Math.max(0, endNanos - startNanos) / 1e3,
+                track(agent), escape(orderKey(conversationId))));
+    }
+
+    /**
+     * Writes every span recorded so far, replacing the previous file. Safe to call more than once.
+     */
+    public static synchronized void write() {
+        if (!enabled()) {
+            return;
+        }
+        final List<String> events = new ArrayList<>(_events);
+        _tracks.forEach((agent, tid) -> events.add(String.format(
+                "{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":%d,\"args\":{\"name\":\"%s\"}}", tid, escape(agent))));
+        try (Writer out = Files.newBufferedWriter(Path.of(Settings.traceFile), StandardCharsets.UTF_8)) {
+            out.write("{\"traceEvents\":[\n");
+            for (int i = 0; i < events.size(); i++) {
+                out.write(events.get(i));
+                out.write(i + 1 < events.size() ? ",\n" : "\n");
+            }
+            out.write("],\"displayTimeUnit\":\"ms\"}\n");
+        } catch (final IOException e) {
+            System.err.println("Could not write trace to " + Settings.traceFile + ": " + e.getMessage());
+            return;
+        }
+        System.out.println("trace: " + _events.size() + " spans written to " + Settings.traceFile
+                + (_dropped.get() > 0 ? " (" + _dropped.get() + " dropped over trace.max.events)" : ""));
+    }
+
+    private static int track(final Agent agent) {
+        return _tracks.computeIfAbsent(agent.getLocalName(), name -> _nextTrack.incrementAndGet());
+    }
+
+    private static String orderKey(final String conversationId) {
+        final int separator = conversationId.indexOf(':');
+        return separator < 0 ? conversationId : conversationId.substring(separator + 1);
+    }
+
+    private static String escape(final String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}